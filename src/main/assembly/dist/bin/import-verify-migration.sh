@@ -5,5 +5,15 @@ INFILE=${1:-"file_migration.zip"}
 
 unzip $INFILE
 
+# expected_files.sha1_checksum is binary, the dump has hex text: import into a text column and convert it back,
+# invalid hex becomes NULL. The next dd-verify-migration command recreates the view expected_files_hex.
+psql -v ON_ERROR_STOP=1 -U dd_manage_prestaging dd_verify_migration <<SQL
+DROP VIEW IF EXISTS expected_files_hex;
+ALTER TABLE expected_files ALTER COLUMN sha1_checksum TYPE varchar(40) USING encode(sha1_checksum, 'hex');
+SQL
 psql -U dd_manage_prestaging dd_verify_migration < $TEMPIN
+psql -v ON_ERROR_STOP=1 -U dd_manage_prestaging dd_verify_migration <<SQL
+ALTER TABLE expected_files ALTER COLUMN sha1_checksum TYPE bytea
+  USING CASE WHEN sha1_checksum ~ '^([0-9a-fA-F]{2})+\$' THEN decode(sha1_checksum, 'hex') END;
+SQL
 rm $TEMPIN
@@ -23,17 +23,29 @@ import io.dropwizard.core.setup.Bootstrap;
 import io.dropwizard.core.setup.Environment;
 import io.dropwizard.db.DataSourceFactory;
 import io.dropwizard.hibernate.HibernateBundle;
+import nl.knaw.dans.migration.cli.CompareCommand;
 import nl.knaw.dans.migration.cli.LoadFromDataverseCommand;
 import nl.knaw.dans.migration.core.tables.ActualDataset;
 import nl.knaw.dans.migration.core.tables.ActualFile;
+import nl.knaw.dans.migration.core.tables.ActualFileRange;
+import nl.knaw.dans.migration.core.tables.ActualFileRef;
+import nl.knaw.dans.migration.core.tables.ActualFileVersion;
+import nl.knaw.dans.migration.core.tables.DatasetFingerprint;
+import nl.knaw.dans.migration.core.tables.DatasetPath;
+import nl.knaw.dans.migration.core.tables.DatasetRef;
 import nl.knaw.dans.migration.core.tables.ExpectedDataset;
 import nl.knaw.dans.migration.core.tables.ExpectedFile;
+import nl.knaw.dans.migration.core.tables.FileDifference;
 import nl.knaw.dans.migration.core.tables.InputDataset;
+import nl.knaw.dans.migration.core.tables.LoadProgress;
+import nl.knaw.dans.migration.core.tables.LoadRun;
 
 public class DdVerifyMigrationApplication extends Application<DdVerifyMigrationConfiguration> {
 
     private final HibernateBundle<DdVerifyMigrationConfiguration> verificationBundle =
-            new HibernateBundle<DdVerifyMigrationConfiguration>(ExpectedFile.class, ActualFile.class, ExpectedDataset.class, InputDataset.class, ActualDataset.class) {
+            new HibernateBundle<DdVerifyMigrationConfiguration>(ExpectedFile.class, ActualFile.class, ExpectedDataset.class, InputDataset.class, ActualDataset.class, LoadProgress.class, LoadRun.class,
+                ActualFileRange.class, ActualFileVersion.class, DatasetRef.class, DatasetPath.class, ActualFileRef.class, FileDifference.class,
+                DatasetFingerprint.class) {
 
         @Override
         public DataSourceFactory getDataSourceFactory(DdVerifyMigrationConfiguration configuration) {
@@ -56,6 +68,7 @@ public class DdVerifyMigrationApplication extends Application<DdVerifyMigrationC
         bootstrap.getObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
         bootstrap.addBundle(verificationBundle);
         bootstrap.addCommand(new LoadFromDataverseCommand(this, verificationBundle));
+        bootstrap.addCommand(new CompareCommand(this, verificationBundle));
     }
 
     @Override
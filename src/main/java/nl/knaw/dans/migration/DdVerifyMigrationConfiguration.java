@@ -20,9 +20,18 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import io.dropwizard.core.Configuration;
 import io.dropwizard.db.DataSourceFactory;
 import nl.knaw.dans.lib.util.DataverseClientFactory;
+import nl.knaw.dans.migration.config.ActualWriterConfig;
+import nl.knaw.dans.migration.config.CommitPolicy;
+import nl.knaw.dans.migration.config.CompareConfig;
+import nl.knaw.dans.migration.config.RateLimitConfig;
+import nl.knaw.dans.migration.config.SchemaConfig;
+import nl.knaw.dans.migration.config.SearchConfig;
+import nl.knaw.dans.migration.config.UserCacheConfig;
+import nl.knaw.dans.migration.config.WriteBehindConfig;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import java.nio.file.Path;
 
 public class DdVerifyMigrationConfiguration extends Configuration {
   @Valid
@@ -33,6 +42,43 @@ public class DdVerifyMigrationConfiguration extends Configuration {
   @NotNull
   private DataSourceFactory verificationDatabase = new DataSourceFactory();
 
+  @Valid
+  @NotNull
+  private ActualWriterConfig actualWriter = new ActualWriterConfig();
+
+  @Valid
+  @NotNull
+  private WriteBehindConfig writeBehind = new WriteBehindConfig();
+
+  @Valid
+  @NotNull
+  private CommitPolicy commitPolicy = new CommitPolicy();
+
+  @Valid
+  @NotNull
+  private UserCacheConfig userCache = new UserCacheConfig();
+
+  @Valid
+  @NotNull
+  private RateLimitConfig dataverseRateLimit = new RateLimitConfig();
+
+  @Valid
+  @NotNull
+  private SearchConfig search = new SearchConfig();
+
+  @Valid
+  @NotNull
+  private SchemaConfig schema = new SchemaConfig();
+
+  @Valid
+  @NotNull
+  private CompareConfig compare = new CompareConfig();
+
+  /**
+   * optional directory with the data of Dataverse responses, written through by load-from-dataverse
+   */
+  private Path responseStore;
+
   @JsonProperty("verificationDatabase")
   public DataSourceFactory getVerificationDatabase() {
     return verificationDatabase;
@@ -49,4 +95,76 @@ public class DdVerifyMigrationConfiguration extends Configuration {
   public void setDataverse(DataverseClientFactory dataverse) {
     this.dataverse = dataverse;
   }
+
+  public ActualWriterConfig getActualWriter() {
+    return actualWriter;
+  }
+
+  public void setActualWriter(ActualWriterConfig actualWriter) {
+    this.actualWriter = actualWriter;
+  }
+
+  public WriteBehindConfig getWriteBehind() {
+    return writeBehind;
+  }
+
+  public void setWriteBehind(WriteBehindConfig writeBehind) {
+    this.writeBehind = writeBehind;
+  }
+
+  public CommitPolicy getCommitPolicy() {
+    return commitPolicy;
+  }
+
+  public void setCommitPolicy(CommitPolicy commitPolicy) {
+    this.commitPolicy = commitPolicy;
+  }
+
+  public UserCacheConfig getUserCache() {
+    return userCache;
+  }
+
+  public void setUserCache(UserCacheConfig userCache) {
+    this.userCache = userCache;
+  }
+
+  public RateLimitConfig getDataverseRateLimit() {
+    return dataverseRateLimit;
+  }
+
+  public void setDataverseRateLimit(RateLimitConfig dataverseRateLimit) {
+    this.dataverseRateLimit = dataverseRateLimit;
+  }
+
+  public SearchConfig getSearch() {
+    return search;
+  }
+
+  public void setSearch(SearchConfig search) {
+    this.search = search;
+  }
+
+  public SchemaConfig getSchema() {
+    return schema;
+  }
+
+  public void setSchema(SchemaConfig schema) {
+    this.schema = schema;
+  }
+
+  public CompareConfig getCompare() {
+    return compare;
+  }
+
+  public void setCompare(CompareConfig compare) {
+    this.compare = compare;
+  }
+
+  public Path getResponseStore() {
+    return responseStore;
+  }
+
+  public void setResponseStore(Path responseStore) {
+    this.responseStore = responseStore;
+  }
 }
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.cli;
+
+import io.dropwizard.core.Application;
+import io.dropwizard.core.setup.Environment;
+import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory;
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+import nl.knaw.dans.lib.util.DefaultConfigEnvironmentCommand;
+import nl.knaw.dans.migration.DdVerifyMigrationConfiguration;
+import nl.knaw.dans.migration.config.CompareConfig;
+import nl.knaw.dans.migration.core.FileComparer;
+import nl.knaw.dans.migration.core.FileComparison;
+import nl.knaw.dans.migration.core.FileRow;
+import nl.knaw.dans.migration.core.Fingerprint;
+import nl.knaw.dans.migration.core.PrefetchingIterator;
+import nl.knaw.dans.migration.core.tables.DatasetFingerprint;
+import nl.knaw.dans.migration.core.tables.DatasetFingerprint.Side;
+import nl.knaw.dans.migration.core.tables.FileDifference;
+import nl.knaw.dans.migration.db.DatasetFingerprintDAO;
+import nl.knaw.dans.migration.db.FileDifferenceDAO;
+import nl.knaw.dans.migration.db.FileRowsDAO;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class CompareCommand extends DefaultConfigEnvironmentCommand<DdVerifyMigrationConfiguration> {
+
+    private final String destCsv = "csv";
+    private final String destRecomputeActual = "recompute-actual";
+    private static final CSVFormat csvFormat = CSVFormat.RFC4180
+        .withHeader("doi", "path", "category", "expected_value", "actual_value");
+    private static final Logger log = LoggerFactory.getLogger(CompareCommand.class);
+    private final HibernateBundle<DdVerifyMigrationConfiguration> verificationBundle;
+
+    /**
+     * Creates a new environment command.
+     *
+     * @param application the application providing this command
+     */
+    public CompareCommand(
+        Application<DdVerifyMigrationConfiguration> application,
+        HibernateBundle<DdVerifyMigrationConfiguration> verificationBundle
+    ) {
+        super(application, "compare", "Compare expected files with the files of the latest version of each dataset");
+        this.verificationBundle = verificationBundle;
+    }
+
+    @Override
+    public void configure(Subparser subparser) {
+        super.configure(subparser);
+
+        subparser.addArgument("--" + destCsv)
+            .dest(destCsv)
+            .type(File.class)
+            .setDefault(new File("file-differences.csv"))
+            .help("The differences are written to this file and to the table file_differences");
+
+        subparser.addArgument("--" + destRecomputeActual)
+            .dest(destRecomputeActual)
+            .action(Arguments.storeTrue())
+            .help("Recompute the fingerprints of the actual files from actual_files instead of using those written by load-from-dataverse, "
+                + "for example after loading with an older version");
+    }
+
+    @Override
+    protected void run(Environment environment, Namespace namespace, DdVerifyMigrationConfiguration configuration) throws Exception {
+        SessionFactory sessionFactory = verificationBundle.getSessionFactory();
+        SchemaManagers.create(verificationBundle, configuration.getSchema(), configuration.getActualWriter().getLayout()).prepare();
+        FileComparer comparer = new UnitOfWorkAwareProxyFactory(verificationBundle)
+            .create(
+                FileComparer.class,
+                new Class[] { FileRowsDAO.class, FileDifferenceDAO.class, DatasetFingerprintDAO.class },
+                new Object[] { new FileRowsDAO(sessionFactory), new FileDifferenceDAO(sessionFactory), new DatasetFingerprintDAO(sessionFactory) }
+            );
+        CompareConfig config = configuration.getCompare();
+        File csvFile = namespace.get(destCsv);
+        if (namespace.getBoolean(destRecomputeActual)) {
+            log.info("Recomputing the fingerprints of the actual files");
+            computeFingerprints(comparer, Side.ACTUAL, config);
+        }
+        log.info("Computing the fingerprints of the expected files");
+        computeFingerprints(comparer, Side.EXPECTED, config);
+        log.info("Comparing the files of the datasets with different fingerprints, differences go to file_differences and {}", csvFile);
+        comparer.clearDifferences();
+        List<String> dois = new ArrayList<>(config.getDoisPerQuery());
+        AtomicLong differingDatasets = new AtomicLong();
+        Map<FileDifference.Category, Long> counts;
+        try (PrefetchingIterator<DatasetFingerprint> fingerprints = new PrefetchingIterator<>(
+                (DatasetFingerprint last) -> comparer.fingerprintPage(last, config.getPageSize()), config.getPageSize(), config.getReadAhead(),
+                "fingerprint-prefetch");
+             DifferenceWriter writer = new DifferenceWriter(comparer, csvFile, config.getPageSize())) {
+            FileComparison comparison = new FileComparison(writer);
+            Fingerprint.differingDois(fingerprints, doi -> {
+                differingDatasets.incrementAndGet();
+                dois.add(doi);
+                if (dois.size() == config.getDoisPerQuery()) {
+                    compareFiles(comparer, comparison, dois, config);
+                    dois.clear();
+                }
+            });
+            compareFiles(comparer, comparison, dois, config);
+            counts = comparison.getCounts();
+        }
+        log.info("{} datasets with different fingerprints", differingDatasets.get());
+        if (counts.isEmpty())
+            log.info("No differences");
+        counts.forEach((category, n) -> log.info("{}: {}", category, n));
+    }
+
+    /**
+     * Replaces the fingerprints of one side with those of all its files.
+     */
+    private void computeFingerprints(FileComparer comparer, Side side, CompareConfig config) {
+        comparer.clearFingerprints(side);
+        List<DatasetFingerprint> batch = new ArrayList<>(config.getPageSize());
+        try (PrefetchingIterator<FileRow> rows = rows(comparer, side, null, config)) {
+            Fingerprint.collect(rows, side, fingerprint -> {
+                batch.add(fingerprint);
+                if (batch.size() == config.getPageSize()) {
+                    comparer.writeFingerprints(batch);
+                    batch.clear();
+                }
+            });
+        }
+        comparer.writeFingerprints(batch);
+    }
+
+    private void compareFiles(FileComparer comparer, FileComparison comparison, List<String> dois, CompareConfig config) {
+        if (dois.isEmpty())
+            return;
+        // the fetchers keep reading the DOIs while the caller refills its list
+        List<String> copy = new ArrayList<>(dois);
+        try (PrefetchingIterator<FileRow> expected = rows(comparer, Side.EXPECTED, copy, config);
+             PrefetchingIterator<FileRow> actual = rows(comparer, Side.ACTUAL, copy, config)) {
+            comparison.compare(expected, actual);
+        }
+    }
+
+    private PrefetchingIterator<FileRow> rows(FileComparer comparer, Side side, List<String> dois, CompareConfig config) {
+        int pageSize = config.getPageSize();
+        return side == Side.EXPECTED
+            ? new PrefetchingIterator<>((FileRow last) -> comparer.expectedPage(dois, last, pageSize), pageSize, config.getReadAhead(), "expected-prefetch")
+            : new PrefetchingIterator<>((FileRow last) -> comparer.actualPage(dois, last, pageSize), pageSize, config.getReadAhead(), "actual-prefetch");
+    }
+
+    /**
+     * Writes the differences to the CSV file as they come and to the table in batches.
+     */
+    private static class DifferenceWriter implements Consumer<FileDifference>, Closeable {
+        private final FileComparer comparer;
+        private final CSVPrinter csv;
+        private final int batchSize;
+        private final List<FileDifference> batch = new ArrayList<>();
+
+        private DifferenceWriter(FileComparer comparer, File csvFile, int batchSize) throws IOException {
+            this.comparer = comparer;
+            this.csv = csvFormat.print(Files.newBufferedWriter(csvFile.toPath(), UTF_8));
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public void accept(FileDifference d) {
+            try {
+                csv.printRecord(d.getDoi(), d.getPath(), d.getCategory(), d.getExpectedValue(), d.getActualValue());
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            batch.add(d);
+            if (batch.size() == batchSize)
+                flush();
+        }
+
+        private void flush() {
+            comparer.writeDifferences(batch);
+            batch.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            }
+            finally {
+                csv.close();
+            }
+        }
+    }
+}
@@ -19,39 +19,83 @@ import io.dropwizard.core.Application;
 import io.dropwizard.core.setup.Environment;
 import io.dropwizard.hibernate.HibernateBundle;
 import io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory;
+import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.MutuallyExclusiveGroup;
 import net.sourceforge.argparse4j.inf.Namespace;
 import net.sourceforge.argparse4j.inf.Subparser;
 import nl.knaw.dans.lib.dataverse.DataverseClient;
-import nl.knaw.dans.lib.dataverse.SearchOptions;
 import nl.knaw.dans.lib.dataverse.model.search.DatasetResultItem;
 import nl.knaw.dans.lib.dataverse.model.search.ResultItem;
-import nl.knaw.dans.lib.dataverse.model.search.SearchItemType;
 import nl.knaw.dans.lib.util.DefaultConfigEnvironmentCommand;
 import nl.knaw.dans.migration.DdVerifyMigrationConfiguration;
+import nl.knaw.dans.migration.config.ActualWriterConfig;
+import nl.knaw.dans.migration.config.UserCacheConfig;
+import nl.knaw.dans.migration.core.AdaptiveLimiter;
+import nl.knaw.dans.migration.core.DatasetSearch;
 import nl.knaw.dans.migration.core.DataverseLoader;
+import nl.knaw.dans.migration.core.DoiSeenSet;
 import nl.knaw.dans.migration.core.FedoraToBagCsv;
+import nl.knaw.dans.migration.core.LoadPipeline;
+import nl.knaw.dans.migration.core.LoadSummary;
 import nl.knaw.dans.migration.core.Mode;
+import nl.knaw.dans.migration.core.PrefetchingIterator;
+import nl.knaw.dans.migration.core.ResponseStore;
+import nl.knaw.dans.migration.core.SchemaManager;
+import nl.knaw.dans.migration.core.UuidResolver;
 import nl.knaw.dans.migration.db.ActualDatasetDAO;
 import nl.knaw.dans.migration.db.ActualFileDAO;
+import nl.knaw.dans.migration.db.ActualFileRangeDAO;
+import nl.knaw.dans.migration.db.ActualTables;
+import nl.knaw.dans.migration.db.ActualUpserter;
+import nl.knaw.dans.migration.db.ActualWriter;
+import nl.knaw.dans.migration.db.ChecksumColumnsDAO;
+import nl.knaw.dans.migration.db.DatasetFingerprintDAO;
+import nl.knaw.dans.migration.db.LoadProgressDAO;
+import nl.knaw.dans.migration.db.LoadRunDAO;
+import nl.knaw.dans.migration.db.NormalisedFilesDAO;
+import nl.knaw.dans.migration.db.StagingTablesDAO;
+import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.LineIterator;
 import org.hibernate.SessionFactory;
+import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.function.Consumer;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.util.Collections.singletonList;
 
 public class LoadFromDataverseCommand extends DefaultConfigEnvironmentCommand<DdVerifyMigrationConfiguration> {
 
     private final String destDoi = "doi";
     private final String destCsv = "csv";
     private final String destUuids = "UUIDs";
+    private final String destThreads = "threads";
+    private final String destReplay = "replay";
+    private final String destResume = "resume";
+    private final String destSince = "since";
+    private final String destUnresolved = "unresolved";
+    private final String destOffset = "offset";
+    private final String destUpsert = "upsert";
+    private final String destStaging = "staging";
+    private final String destPartition = "partition";
+    private final String lastRun = "last-run";
+    // the seen set grows beyond this, at the cost of rehashing
+    private static final int expectedDatasets = 1_000_000;
+    // DOIs deleted in one transaction and loaded before the next are read
+    private static final int reloadBatchSize = 1000;
     private static final Logger log = LoggerFactory.getLogger(LoadFromDataverseCommand.class);
     private final HibernateBundle<DdVerifyMigrationConfiguration> verificationBundle;
 
@@ -90,6 +134,59 @@ public class LoadFromDataverseCommand extends DefaultConfigEnvironmentCommand<Dd
             .dest(destUuids)
             .type(File.class)
             .help(".txt file with bag ids");
+
+        g.addArgument("--" + destSince)
+            .dest(destSince)
+            .metavar("TIMESTAMP|" + lastRun)
+            .help("Reload the datasets with a version released or created since the timestamp, for example: 2023-03-01T22:00:00Z. "
+                + "With '" + lastRun + "' the start of the last completed load of all datasets or of this kind.");
+
+        subparser.addArgument("--" + destOffset)
+            .dest(destOffset)
+            .type(Long.class)
+            .setDefault(0L)
+            .metavar("RECORDS")
+            .help("Skip the first records of the csv file, to continue an interrupted load with the offset it logged last");
+
+        subparser.addArgument("--" + destUnresolved)
+            .dest(destUnresolved)
+            .type(File.class)
+            .help("Report of the UUIDs without a dataset, default: the UUIDs file with extension .unresolved");
+
+        subparser.addArgument("--" + destThreads)
+            .dest(destThreads)
+            .type(Integer.class)
+            .setDefault(1)
+            .help("Number of datasets loaded in parallel, not applicable to a single DOI");
+
+        subparser.addArgument("--" + destReplay)
+            .dest(destReplay)
+            .action(Arguments.storeTrue())
+            .help("Read the Dataverse responses from the configured responseStore instead of from Dataverse");
+
+        subparser.addArgument("--" + destUpsert)
+            .dest(destUpsert)
+            .action(Arguments.storeTrue())
+            .help("Instead of deleting and inserting the actual rows of the DOIs, only insert, update or delete the rows that changed. "
+                + "Not applicable to loading all datasets");
+
+        subparser.addArgument("--" + destStaging)
+            .dest(destStaging)
+            .action(Arguments.storeTrue())
+            .help("Load all datasets into staging tables and replace the actual tables with them when done, "
+                + "the actual tables stay complete during the load. Repeat with --" + destResume + " to continue into the staging tables");
+
+        subparser.addArgument("--" + destPartition)
+            .dest(destPartition)
+            .type(Integer.class)
+            .metavar("N")
+            .help("Reload the datasets of one hash partition of actual_files, numbered from 0 below the configured schema partitions. "
+                + "The partition is truncated instead of deleting its rows");
+
+        subparser.addArgument("--" + destResume)
+            .dest(destResume)
+            .metavar("RUN-ID")
+            .help("Continue an interrupted load of all datasets: keep the actual tables and skip the DOIs completed by the run");
     }
 
     @Override
@@ -98,72 +195,318 @@ public class LoadFromDataverseCommand extends DefaultConfigEnvironmentCommand<Dd
         log.info("dataverse: {}", configuration.getDataverse().getBaseUrl());
         DataverseClient client = configuration.getDataverse().build();
         SessionFactory verificationBundleSessionFactory = verificationBundle.getSessionFactory();
-        DataverseLoader proxy = new UnitOfWorkAwareProxyFactory(verificationBundle)
-            .create(
-                DataverseLoader.class,
-                new Class[] { DataverseClient.class, ActualFileDAO.class , ActualDatasetDAO.class},
-                new Object[] {
+        int threads = namespace.getInt(destThreads);
+        // each dataset needs at most three concurrent requests, the depositor waits for the role assignments
+        ExecutorService fetchExecutor = Executors.newFixedThreadPool(3 * threads);
+        LoadSummary summary = new LoadSummary();
+        ResponseStore responseStore = new ResponseStore(configuration.getResponseStore(), environment.getObjectMapper(), namespace.getBoolean(destReplay));
+        AdaptiveLimiter limiter = new AdaptiveLimiter(configuration.getDataverseRateLimit());
+        ActualWriter actualWriter = configuration.getActualWriter().build(verificationBundleSessionFactory);
+        boolean upsert = namespace.getBoolean(destUpsert);
+        if (namespace.getBoolean(destStaging) && configuration.getActualWriter().getType() == ActualWriterConfig.Type.HIBERNATE)
+            throw new IllegalArgumentException("--" + destStaging + " needs actualWriter type JDBC_BATCH or COPY, the entities are mapped to the actual tables");
+        boolean perVersion = configuration.getActualWriter().getLayout() == ActualWriterConfig.Layout.PER_VERSION;
+        if (!perVersion && (upsert || namespace.getBoolean(destStaging) || namespace.getInt(destPartition) != null))
+            throw new IllegalArgumentException("--" + destUpsert + ", --" + destStaging + " and --" + destPartition + " need actualWriter layout PER_VERSION");
+        if (namespace.getBoolean(destStaging) && configuration.getSchema().getPartitions() > 0)
+            throw new IllegalArgumentException("--" + destStaging + " would replace the partitioned tables with plain ones, use --" + destPartition);
+        try {
+            SchemaManager schema = SchemaManagers.create(verificationBundle, configuration.getSchema(), configuration.getActualWriter().getLayout());
+            schema.prepare();
+            DataverseLoader proxy = new UnitOfWorkAwareProxyFactory(verificationBundle)
+                .create(
+                    DataverseLoader.class,
+                    new Class[] {
+                        DataverseClient.class,
+                        ActualFileDAO.class,
+                        ActualFileRangeDAO.class,
+                        NormalisedFilesDAO.class,
+                        ActualWriterConfig.Layout.class,
+                        ActualDatasetDAO.class,
+                        LoadProgressDAO.class,
+                        LoadRunDAO.class,
+                        StagingTablesDAO.class,
+                        ChecksumColumnsDAO.class,
+                        DatasetFingerprintDAO.class,
+                        ActualWriter.class,
+                        ActualUpserter.class,
+                        Executor.class,
+                        LoadSummary.class,
+                        UserCacheConfig.class,
+                        ResponseStore.class,
+                        AdaptiveLimiter.class
+                    },
+                    new Object[] {
                         client,
                         new ActualFileDAO(verificationBundleSessionFactory),
-                        new ActualDatasetDAO(verificationBundleSessionFactory)
-                }
-            );
+                        new ActualFileRangeDAO(verificationBundleSessionFactory),
+                        new NormalisedFilesDAO(verificationBundleSessionFactory),
+                        configuration.getActualWriter().getLayout(),
+                        new ActualDatasetDAO(verificationBundleSessionFactory),
+                        new LoadProgressDAO(verificationBundleSessionFactory),
+                        new LoadRunDAO(verificationBundleSessionFactory),
+                        new StagingTablesDAO(verificationBundleSessionFactory),
+                        new ChecksumColumnsDAO(verificationBundleSessionFactory),
+                        new DatasetFingerprintDAO(verificationBundleSessionFactory),
+                        actualWriter,
+                        new ActualUpserter(verificationBundleSessionFactory, actualWriter),
+                        fetchExecutor,
+                        summary,
+                        configuration.getUserCache(),
+                        responseStore,
+                        limiter
+                    }
+                );
+            DatasetSearch search = new DatasetSearch(client, limiter, configuration.getSearch(),
+                configuration.getDataverse().getBaseUrl(), configuration.getDataverse().getApiKey());
+            load(proxy, schema, search, configuration.getSearch().getUuidBatchSize(), responseStore, summary,
+                namespace, (mode, runId, tables) -> new LoadPipeline(proxy, mode, runId, threads, configuration.getWriteBehind(),
+                    configuration.getCommitPolicy(), tables, upsert, summary));
+            summary.log();
+        }
+        finally {
+            fetchExecutor.shutdown();
+        }
+    }
+
+    private void load(DataverseLoader proxy, SchemaManager schema, DatasetSearch search, int uuidBatchSize, ResponseStore responseStore, LoadSummary summary, Namespace namespace,
+        Pipelines pipelines) throws Exception {
         String singleDoi = namespace.getString(destDoi);
         String csvFile = namespace.getString(destCsv);
         String uuidsFile = namespace.getString(destUuids);
+        String resumeRunId = namespace.getString(destResume);
+        String since = namespace.getString(destSince);
+        long offset = namespace.getLong(destOffset);
+        boolean upsert = namespace.getBoolean(destUpsert);
+        boolean staging = namespace.getBoolean(destStaging);
+        Integer partition = namespace.getInt(destPartition);
         Mode mode = Mode.from(namespace);
+        if (offset != 0 && csvFile == null)
+            throw new IllegalArgumentException("--" + destOffset + " applies to --" + destCsv);
+        if (resumeRunId != null && (singleDoi != null || uuidsFile != null || csvFile != null || since != null))
+            throw new IllegalArgumentException("--" + destResume + " applies to loading all datasets, not to a DOI, csv, UUIDs or since");
+        if (upsert && singleDoi == null && uuidsFile == null && csvFile == null && since == null)
+            throw new IllegalArgumentException("--" + destUpsert + " applies to a DOI, csv, UUIDs or since, loading all datasets starts with empty tables");
+        if (staging && (singleDoi != null || uuidsFile != null || csvFile != null || since != null))
+            throw new IllegalArgumentException("--" + destStaging + " applies to loading all datasets, not to a DOI, csv, UUIDs or since");
+        if (partition != null && (singleDoi != null || uuidsFile != null || csvFile != null || since != null || resumeRunId != null || staging || upsert))
+            throw new IllegalArgumentException("--" + destPartition + " reloads part of all datasets, not a DOI, csv, UUIDs or since, nor with --"
+                + destResume + ", --" + destStaging + " or --" + destUpsert);
+        if (partition != null && (partition < 0 || partition >= schema.getPartitions()))
+            throw new IllegalArgumentException(String.format("--%s %d is not one of the %d configured schema partitions", destPartition, partition, schema.getPartitions()));
+        if (since != null && responseStore.isReplay())
+            throw new IllegalArgumentException("--" + destSince + " uses the search API, not available with --" + destReplay);
         if (singleDoi != null) {
-            proxy.deleteSingleDoi(singleDoi, mode);
-            proxy.loadFromDataset(singleDoi, mode);
+            if (!upsert)
+                proxy.deleteSingleDoi(singleDoi, mode);
+            try (LoadPipeline pipeline = pipelines.open(mode, null, ActualTables.LIVE)) {
+                pipeline.submit(singleDoi);
+            }
         }
         else if (uuidsFile != null) {
-            log.info("Loading UUIDs found in {}, delete/insert one by one from/into actual tables ({})", uuidsFile, mode);
-            FileUtils.readLines(new File(uuidsFile), UTF_8).forEach(line ->
-                doFirst(
-                    datasetIterator(client, "dansBagId:urn:uuid:" + line),
-                    item -> {
-                        String doi = ((DatasetResultItem) item).getGlobalId();
-                        proxy.deleteSingleDoi(doi, mode);
-                        proxy.loadFromDataset(doi, mode);
-                    }
-                )
-            );
+            if (responseStore.isReplay())
+                throw new IllegalArgumentException("UUIDs are resolved with the search API, not available with --" + destReplay);
+            File unresolvedFile = Optional.ofNullable(namespace.<File> get(destUnresolved))
+                .orElse(new File(uuidsFile.replaceAll("[.]txt$", "") + ".unresolved"));
+            loadUuids(proxy, new UuidResolver(search, uuidBatchSize), new File(uuidsFile), unresolvedFile, mode, pipelines.open(mode, null, ActualTables.LIVE));
+        }
+        else if (since != null) {
+            loadSince(proxy, search, summary, since, mode, pipelines);
+        }
+        else if (partition != null) {
+            loadPartition(schema, search, responseStore, summary, partition, mode, pipelines.open(mode, null, ActualTables.LIVE));
         }
         else if (csvFile == null) {
-            log.info("Deleting all from actual tables ({})", mode);
-            proxy.deleteAll(mode);
-            log.info("No DOI(s)/UUIDs provided, loading all datasets into actual tables ({})", mode);
-            Iterator<ResultItem> iterator = datasetIterator(client, "*");
-            String last = "";
-            while(iterator.hasNext()) {
-                String globalId = ((DatasetResultItem) iterator.next()).getGlobalId();
-                if (!globalId.equals(last))
-                    proxy.loadFromDataset(globalId, mode);
-                last = globalId;
-                log.trace("done with "+last);
-            }
+            loadAll(proxy, search, responseStore, summary, resumeRunId, staging, mode, pipelines);
         }
         else {
-            log.info("Deleting DOIs found in {} from actual tables ({})", csvFile, mode);
-            proxy.deleteCsvDOIs(FedoraToBagCsv.parse(new File(csvFile)), mode);
-            log.info("Loading DOIs found in {} into actual tables ({})", csvFile, mode);
-            for(CSVRecord r: FedoraToBagCsv.parse(new File(csvFile))) {
+            loadCsv(proxy, new File(csvFile), offset, mode, pipelines.open(mode, null, ActualTables.LIVE));
+        }
+    }
+
+    private void loadCsv(DataverseLoader proxy, File csvFile, long offset, Mode mode, LoadPipeline loadPipeline) throws Exception {
+        log.info("Reloading DOIs found in {} after record {} into actual tables ({}), {} DOIs per batch", csvFile, offset, mode, reloadBatchSize);
+        DoiSeenSet seen = new DoiSeenSet(expectedDatasets);
+        List<String> batch = new ArrayList<>(reloadBatchSize);
+        try (CSVParser records = FedoraToBagCsv.parse(csvFile);
+             LoadPipeline pipeline = loadPipeline) {
+            long recordNumber = offset;
+            for (CSVRecord r : records) {
+                recordNumber = r.getRecordNumber();
+                if (recordNumber <= offset)
+                    continue;
                 FedoraToBagCsv fedoraToBagCsv = new FedoraToBagCsv(r);
-                if (fedoraToBagCsv.getComment().contains("OK"))
-                    proxy.loadFromDataset("doi:" + fedoraToBagCsv.getDoi(), mode);
+                if (fedoraToBagCsv.getComment().contains("OK") && seen.add(fedoraToBagCsv.getDoi()))
+                    batch.add("doi:" + fedoraToBagCsv.getDoi());
+                if (batch.size() == reloadBatchSize) {
+                    pipeline.reload(batch);
+                    // the offset in the log is only safe once the batch is written
+                    pipeline.awaitIdle();
+                    log.info("Reloaded the DOIs of the first {} records, continue with --{} {}", recordNumber, destOffset, recordNumber);
+                    batch.clear();
+                }
+            }
+            pipeline.reload(batch);
+            pipeline.awaitIdle();
+            log.info("Reloaded the DOIs of all {} records, {} DOIs after record {}", recordNumber, seen.size(), offset);
+        }
+    }
+
+    private void loadAll(DataverseLoader proxy, DatasetSearch search, ResponseStore responseStore, LoadSummary summary, String resumeRunId,
+        boolean staging, Mode mode, Pipelines pipelines) throws Exception {
+        Set<String> done;
+        String runId;
+        if (resumeRunId == null) {
+            runId = DateTime.now().toString("yyyy-MM-dd'T'HH:mm:ss");
+            done = Collections.emptySet();
+            if (!staging) {
+                log.info("Deleting all from actual tables ({})", mode);
+                proxy.deleteAll(mode);
             }
         }
+        else {
+            runId = resumeRunId;
+            done = proxy.findLoadedDois(runId);
+            log.info("Resuming run {}, skipping {} DOIs loaded before", runId, done.size());
+        }
+        if (staging) {
+            log.info("Loading into {} staging tables ({})", resumeRunId == null ? "new" : "existing", mode);
+            proxy.prepareStaging(mode, resumeRunId != null);
+        }
+        proxy.startRun(runId, "all");
+        log.info("No DOI(s)/UUIDs provided, loading all datasets into actual tables ({}), run id {}", mode, runId);
+        try (PrefetchingIterator<ResultItem> items = responseStore.isReplay() ? null : search.find("*");
+             LoadPipeline pipeline = pipelines.open(mode, runId, staging ? ActualTables.STAGING : ActualTables.LIVE)) {
+            Iterator<String> iterator = items == null
+                ? responseStore.storedIds("versions")
+                : new DoiIterator(items);
+            DoiSeenSet seen = new DoiSeenSet(expectedDatasets);
+            while (iterator.hasNext()) {
+                String globalId = iterator.next();
+                if (!seen.add(globalId))
+                    summary.addSkippedDuplicate(globalId);
+                else if (!done.contains(globalId))
+                    pipeline.submit(globalId);
+            }
+        }
+        if (hasFailures(summary)) {
+            // the failed DOIs are not registered as loaded, a resumed run retries them
+            log.warn("Run {} not finished{}, some datasets were not loaded: continue with --{} {}",
+                runId, staging ? " and the staging tables not swapped" : "", destResume, runId);
+            return;
+        }
+        if (staging) {
+            log.info("Building the indexes of the staging tables ({})", mode);
+            proxy.indexStaging(mode);
+            log.info("Replacing the actual tables with the staging tables ({})", mode);
+            proxy.swapStaging(mode);
+        }
+        proxy.finishRun(runId);
     }
 
-    private void doFirst(Iterator<ResultItem> iterator, Consumer<ResultItem> action) {
-        if (iterator.hasNext())
-            action.accept(iterator.next());
+    private void loadPartition(SchemaManager schema, DatasetSearch search, ResponseStore responseStore, LoadSummary summary,
+        int partition, Mode mode, LoadPipeline loadPipeline) throws Exception {
+        if (mode.doFiles()) {
+            log.info("Truncating partition {} of actual_files", partition);
+            schema.truncateActualFiles(partition);
+        }
+        log.info("Reloading the datasets of partition {} into actual tables ({}), {} DOIs per batch", partition, mode, reloadBatchSize);
+        try (PrefetchingIterator<ResultItem> items = responseStore.isReplay() ? null : search.find("*");
+             LoadPipeline pipeline = loadPipeline) {
+            Iterator<String> iterator = items == null
+                ? responseStore.storedIds("versions")
+                : new DoiIterator(items);
+            DoiSeenSet seen = new DoiSeenSet(expectedDatasets);
+            List<String> batch = new ArrayList<>(reloadBatchSize);
+            while (iterator.hasNext()) {
+                String globalId = iterator.next();
+                if (!seen.add(globalId))
+                    summary.addSkippedDuplicate(globalId);
+                else
+                    batch.add(globalId);
+                if (batch.size() == reloadBatchSize || !iterator.hasNext()) {
+                    // the truncated files are deleted again without rows to find, the datasets are deleted by DOI
+                    pipeline.reload(schema.inActualFilesPartition(batch, partition));
+                    batch.clear();
+                }
+            }
+        }
     }
 
-    private Iterator<ResultItem> datasetIterator(DataverseClient client, String s) {
-        log.info("searching " + s);
-        SearchOptions searchOptions = new SearchOptions();
-        searchOptions.setTypes(singletonList(SearchItemType.dataset));
-        return client.search().iterator(s, searchOptions);
+    private void loadUuids(DataverseLoader proxy, UuidResolver resolver, File uuidsFile, File unresolvedFile, Mode mode, LoadPipeline loadPipeline)
+        throws Exception {
+        log.info("Loading UUIDs found in {}, delete/insert batch by batch from/into actual tables ({})", uuidsFile, mode);
+        List<String> unresolved;
+        try (LineIterator lines = FileUtils.lineIterator(uuidsFile, UTF_8.name());
+             LoadPipeline pipeline = loadPipeline) {
+            // the next batch is searched while the previous one loads
+            unresolved = resolver.resolve(lines, pipeline::reload);
+            pipeline.awaitIdle();
+        }
+        FileUtils.writeLines(unresolvedFile, UTF_8.name(), unresolved);
+        if (unresolved.isEmpty())
+            log.info("All UUIDs resolved");
+        else
+            log.warn("{} UUIDs without dataset, see {}", unresolved.size(), unresolvedFile);
+    }
+
+    private void loadSince(DataverseLoader proxy, DatasetSearch search, LoadSummary summary, String since, Mode mode,
+        Pipelines pipelines) throws Exception {
+        Instant from = lastRun.equals(since)
+            ? proxy.findLastRunStart().orElseThrow(() -> new IllegalStateException("No completed run found in the verification database"))
+            : Instant.ofEpochMilli(DateTime.parse(since).getMillis());
+        String runId = DateTime.now().toString("yyyy-MM-dd'T'HH:mm:ss");
+        proxy.startRun(runId, "since");
+        log.info("Reloading datasets modified since {} into actual tables ({}), run id {}", from, mode, runId);
+        // dateSort is the release date of a published version, or the creation date of a draft
+        try (PrefetchingIterator<ResultItem> items = search.find("*", "dateSort:[" + from + " TO *]");
+             LoadPipeline pipeline = pipelines.open(mode, runId, ActualTables.LIVE)) {
+            Iterator<String> iterator = new DoiIterator(items);
+            DoiSeenSet seen = new DoiSeenSet(expectedDatasets);
+            List<String> batch = new ArrayList<>(reloadBatchSize);
+            while (iterator.hasNext()) {
+                String globalId = iterator.next();
+                if (!seen.add(globalId))
+                    summary.addSkippedDuplicate(globalId);
+                else
+                    batch.add(globalId);
+                if (batch.size() == reloadBatchSize) {
+                    pipeline.reload(batch);
+                    batch.clear();
+                }
+            }
+            pipeline.reload(batch);
+        }
+        if (hasFailures(summary))
+            // the next --since last-run starts at the previous finished run and covers these datasets again
+            log.warn("Run {} not finished, some datasets were not loaded", runId);
+        else
+            proxy.finishRun(runId);
+    }
+
+    private static boolean hasFailures(LoadSummary summary) {
+        return summary.getFailedDatasets() > 0 || summary.getUnwrittenDatasets() > 0;
+    }
+
+    private interface Pipelines {
+        LoadPipeline open(Mode mode, String runId, ActualTables tables);
+    }
+
+    private static class DoiIterator implements Iterator<String> {
+        private final Iterator<ResultItem> items;
+
+        private DoiIterator(Iterator<ResultItem> items) {
+            this.items = items;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return items.hasNext();
+        }
+
+        @Override
+        public String next() {
+            return ((DatasetResultItem) items.next()).getGlobalId();
+        }
     }
 }
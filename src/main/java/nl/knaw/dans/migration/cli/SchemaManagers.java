@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.cli;
+
+import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory;
+import nl.knaw.dans.migration.DdVerifyMigrationConfiguration;
+import nl.knaw.dans.migration.config.ActualWriterConfig.Layout;
+import nl.knaw.dans.migration.config.SchemaConfig;
+import nl.knaw.dans.migration.core.SchemaManager;
+import nl.knaw.dans.migration.db.ActualFileRangeDAO;
+import nl.knaw.dans.migration.db.ChecksumColumnsDAO;
+import nl.knaw.dans.migration.db.NormalisedFilesDAO;
+import nl.knaw.dans.migration.db.SchemaDAO;
+import org.hibernate.SessionFactory;
+
+final class SchemaManagers {
+
+    private SchemaManagers() {
+    }
+
+    static SchemaManager create(HibernateBundle<DdVerifyMigrationConfiguration> bundle, SchemaConfig config, Layout layout) {
+        SessionFactory sessionFactory = bundle.getSessionFactory();
+        return new UnitOfWorkAwareProxyFactory(bundle)
+            .create(
+                SchemaManager.class,
+                new Class[] {
+                    SchemaDAO.class,
+                    ChecksumColumnsDAO.class,
+                    ActualFileRangeDAO.class,
+                    NormalisedFilesDAO.class,
+                    SchemaConfig.class,
+                    Layout.class
+                },
+                new Object[] {
+                    new SchemaDAO(sessionFactory),
+                    new ChecksumColumnsDAO(sessionFactory),
+                    new ActualFileRangeDAO(sessionFactory),
+                    new NormalisedFilesDAO(sessionFactory),
+                    config,
+                    layout
+                }
+            );
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.config;
+
+import nl.knaw.dans.migration.db.ActualWriter;
+import nl.knaw.dans.migration.db.CopyActualWriter;
+import nl.knaw.dans.migration.db.DatasetIds;
+import nl.knaw.dans.migration.db.HibernateActualWriter;
+import nl.knaw.dans.migration.db.JdbcBatchActualWriter;
+import nl.knaw.dans.migration.db.NormalisedActualWriter;
+import nl.knaw.dans.migration.db.VersionRangeActualWriter;
+import org.hibernate.SessionFactory;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class ActualWriterConfig {
+  public enum Type {
+    /**
+     * entities saved by the session, as before
+     */
+    HIBERNATE,
+    JDBC_BATCH,
+    /**
+     * PostgreSQL COPY, JDBC batches on other databases
+     */
+    COPY
+  }
+
+  public enum Layout {
+    /**
+     * actual_files, a row per file per version
+     */
+    PER_VERSION,
+    /**
+     * actual_file_ranges, a row per file and the consecutive versions in which it did not change,
+     * expanded by the view actual_files
+     */
+    VERSION_RANGES,
+    /**
+     * actual_file_refs, a row per file per version with integer ids for the DOI and path,
+     * resolved by the view actual_files
+     */
+    NORMALISED
+  }
+
+  @NotNull
+  private Type type = Type.JDBC_BATCH;
+
+  @NotNull
+  private Layout layout = Layout.PER_VERSION;
+
+  /**
+   * rows per JDBC batch, also for COPY when falling back to batches
+   */
+  @Min(1)
+  private int batchSize = 1000;
+
+  /**
+   * DOIs of which the NORMALISED layout keeps the id in memory
+   */
+  @Min(1)
+  private long idCacheSize = 100000;
+
+  public Type getType() {
+    return type;
+  }
+
+  public void setType(Type type) {
+    this.type = type;
+  }
+
+  public Layout getLayout() {
+    return layout;
+  }
+
+  public void setLayout(Layout layout) {
+    this.layout = layout;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  public long getIdCacheSize() {
+    return idCacheSize;
+  }
+
+  public void setIdCacheSize(long idCacheSize) {
+    this.idCacheSize = idCacheSize;
+  }
+
+  public ActualWriter build(SessionFactory sessionFactory) {
+    ActualWriter writer = buildType(sessionFactory);
+    switch (layout) {
+      case PER_VERSION:
+        return writer;
+      case VERSION_RANGES:
+        return new VersionRangeActualWriter(sessionFactory, batchSize, writer);
+      case NORMALISED:
+        return new NormalisedActualWriter(sessionFactory, batchSize, writer, new DatasetIds(sessionFactory, idCacheSize));
+      default:
+        throw new IllegalStateException("Unknown layout " + layout);
+    }
+  }
+
+  private ActualWriter buildType(SessionFactory sessionFactory) {
+    switch (type) {
+      case HIBERNATE:
+        return new HibernateActualWriter(sessionFactory);
+      case JDBC_BATCH:
+        return new JdbcBatchActualWriter(sessionFactory, batchSize);
+      case COPY:
+        return new CopyActualWriter(sessionFactory, batchSize);
+      default:
+        throw new IllegalStateException("Unknown writer type " + type);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.config;
+
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * When load-from-dataverse commits: after a number of datasets, a number of rows or some time, whichever comes first.
+ * Fewer rows mean shorter locks and smaller rollbacks, more rows mean fewer commits to wait for.
+ */
+public class CommitPolicy {
+  @Min(1)
+  private int datasets = 20;
+
+  @Min(1)
+  private long rows = 10000;
+
+  /**
+   * the longest time a written dataset waits for the commit
+   */
+  @NotNull
+  private Duration interval = Duration.seconds(2);
+
+  /**
+   * a dataset that would make the transaction exceed this goes into the next one,
+   * a single dataset with more rows gets a transaction of its own
+   */
+  @Min(1)
+  private long maxRowsPerTransaction = 50000;
+
+  public int getDatasets() {
+    return datasets;
+  }
+
+  public void setDatasets(int datasets) {
+    this.datasets = datasets;
+  }
+
+  public long getRows() {
+    return rows;
+  }
+
+  public void setRows(long rows) {
+    this.rows = rows;
+  }
+
+  public Duration getInterval() {
+    return interval;
+  }
+
+  public void setInterval(Duration interval) {
+    this.interval = interval;
+  }
+
+  public long getMaxRowsPerTransaction() {
+    return maxRowsPerTransaction;
+  }
+
+  public void setMaxRowsPerTransaction(long maxRowsPerTransaction) {
+    this.maxRowsPerTransaction = maxRowsPerTransaction;
+  }
+
+  public boolean isComplete(int nrOfDatasets, long nrOfRows) {
+    return nrOfDatasets >= datasets || nrOfRows >= rows;
+  }
+
+  public boolean fits(long nrOfRows, long moreRows) {
+    return nrOfRows + moreRows <= maxRowsPerTransaction;
+  }
+}
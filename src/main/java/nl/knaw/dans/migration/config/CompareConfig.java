@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.config;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+public class CompareConfig {
+  /**
+   * rows per query on each side, also the differences written per transaction
+   */
+  @Min(1)
+  private int pageSize = 10000;
+
+  /**
+   * pages fetched ahead of the page being compared, per side
+   */
+  @Min(1)
+  private int readAhead = 2;
+
+  /**
+   * datasets with different fingerprints of which the files are compared with one query per side
+   */
+  @Min(1)
+  @Max(1000)
+  private int doisPerQuery = 100;
+
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  public void setPageSize(int pageSize) {
+    this.pageSize = pageSize;
+  }
+
+  public int getDoisPerQuery() {
+    return doisPerQuery;
+  }
+
+  public void setDoisPerQuery(int doisPerQuery) {
+    this.doisPerQuery = doisPerQuery;
+  }
+
+  public int getReadAhead() {
+    return readAhead;
+  }
+
+  public void setReadAhead(int readAhead) {
+    this.readAhead = readAhead;
+  }
+}
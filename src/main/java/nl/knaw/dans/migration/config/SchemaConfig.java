@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.config;
+
+import javax.validation.constraints.Min;
+
+/**
+ * How the tables of the verification database are created when they do not exist yet.
+ */
+public class SchemaConfig {
+  /**
+   * hash partitions of actual_files and expected_files by DOI, 0 for plain tables; needs PostgreSQL 11 or later
+   */
+  @Min(0)
+  private int partitions = 0;
+
+  public int getPartitions() {
+    return partitions;
+  }
+
+  public void setPartitions(int partitions) {
+    this.partitions = partitions;
+  }
+}
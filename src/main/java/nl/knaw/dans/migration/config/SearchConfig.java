@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.config;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+public class SearchConfig {
+  /**
+   * results per search request, Dataverse caps it at 1000
+   */
+  @Min(1)
+  @Max(1000)
+  private int pageSize = 1000;
+
+  /**
+   * pages fetched ahead of the page being processed
+   */
+  @Min(1)
+  private int readAhead = 2;
+
+  /**
+   * bag ids resolved with one search, an OR-query in the URL of a GET request
+   */
+  @Min(1)
+  @Max(100)
+  private int uuidBatchSize = 100;
+
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  public void setPageSize(int pageSize) {
+    this.pageSize = pageSize;
+  }
+
+  public int getReadAhead() {
+    return readAhead;
+  }
+
+  public void setReadAhead(int readAhead) {
+    this.readAhead = readAhead;
+  }
+
+  public int getUuidBatchSize() {
+    return uuidBatchSize;
+  }
+
+  public void setUuidBatchSize(int uuidBatchSize) {
+    this.uuidBatchSize = uuidBatchSize;
+  }
+}
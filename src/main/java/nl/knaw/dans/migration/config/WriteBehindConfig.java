@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.config;
+
+import javax.validation.constraints.Min;
+
+public class WriteBehindConfig {
+  /**
+   * threads writing to the verification database, each in its own transactions
+   */
+  @Min(1)
+  private int writers = 1;
+
+  /**
+   * fetched datasets waiting for a writer, the fetchers block when it is full
+   */
+  @Min(1)
+  private int queueCapacity = 100;
+
+  public int getWriters() {
+    return writers;
+  }
+
+  public void setWriters(int writers) {
+    this.writers = writers;
+  }
+
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  public void setQueueCapacity(int queueCapacity) {
+    this.queueCapacity = queueCapacity;
+  }
+}
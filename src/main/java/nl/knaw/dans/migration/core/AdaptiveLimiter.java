@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import nl.knaw.dans.lib.dataverse.DataverseException;
+import nl.knaw.dans.migration.config.RateLimitConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of concurrent requests to Dataverse with additive increase / multiplicative decrease.
+ * Each success raises the limit by about one per round of requests, each throttled request halves it.
+ * Throttled requests are retried after the Retry-After of the server or a jittered exponential backoff.
+ */
+public class AdaptiveLimiter {
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveLimiter.class);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxRetries;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private double limit;
+    private int inFlight = 0;
+
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public AdaptiveLimiter(RateLimitConfig config) {
+        this.minLimit = config.getMinLimit();
+        this.maxLimit = Math.max(config.getMinLimit(), config.getMaxLimit());
+        this.maxRetries = config.getMaxRetries();
+        this.initialBackoffMillis = config.getInitialBackoff().toMilliseconds();
+        this.maxBackoffMillis = config.getMaxBackoff().toMilliseconds();
+        this.limit = Math.min(maxLimit, Math.max(minLimit, config.getInitialLimit()));
+    }
+
+    public <T> T call(Callable<T> request) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            acquire();
+            try {
+                T result = request.call();
+                release(false);
+                return result;
+            }
+            catch (Exception e) {
+                boolean throttle = isThrottle(e);
+                release(throttle);
+                if (!throttle)
+                    throw e;
+                if (attempt >= maxRetries) {
+                    failures.incrementAndGet();
+                    throw e;
+                }
+                long delay = Math.max(retryAfterMillis(e), backoffMillis(attempt));
+                retries.incrementAndGet();
+                log.warn("Throttled by Dataverse ({}), retry {} of {} in {} ms, limit now {}", e.getMessage(), attempt + 1, maxRetries, delay, getLimit());
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+    private synchronized void acquire() throws InterruptedException {
+        while (inFlight >= (int) limit)
+            wait();
+        inFlight++;
+    }
+
+    private synchronized void release(boolean throttle) {
+        inFlight--;
+        if (throttle) {
+            throttled.incrementAndGet();
+            limit = Math.max(minLimit, limit / 2);
+        }
+        else
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        notifyAll();
+    }
+
+    /**
+     * @return true for responses and errors that indicate an overloaded server
+     */
+    static boolean isThrottle(Exception e) {
+        if (e instanceof DataverseException) {
+            int status = ((DataverseException) e).getStatus();
+            return status == 429 || status == 502 || status == 503 || status == 504;
+        }
+        // connection refused/reset, timeouts; a body that does not parse is no overload and would fail again
+        return e instanceof IOException && !(e instanceof JsonProcessingException);
+    }
+
+    private long retryAfterMillis(Exception e) {
+        if (!(e instanceof DataverseException))
+            return 0;
+        // only the delay-seconds form, an HTTP date falls back to the backoff
+        return Optional.ofNullable(((DataverseException) e).getHttpResponse())
+            .map(response -> response.getFirstHeader("Retry-After"))
+            .map(header -> header.getValue().trim())
+            .filter(value -> value.matches("\\d+"))
+            .map(seconds -> Math.min(maxBackoffMillis, Long.parseLong(seconds) * 1000))
+            .orElse(0L);
+    }
+
+    private long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public long getThrottled() {
+        return throttled.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * @return the number of requests that were still throttled after the last retry
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import nl.knaw.dans.lib.dataverse.model.dataset.DatasetLatestVersion;
+import nl.knaw.dans.lib.dataverse.model.dataset.DatasetVersion;
+import nl.knaw.dans.migration.core.tables.ActualDataset;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Dataverse resources of a single dataset. Each resource is requested once and reused for all versions.
+ */
+public class DatasetFetchPlan {
+    private final CompletableFuture<Optional<List<DatasetVersion>>> versions;
+    private final CompletableFuture<Optional<DatasetLatestVersion>> latestVersion;
+    private final CompletableFuture<Optional<String>> depositor;
+    private final AtomicInteger datasetLevelRequests;
+    private final AtomicInteger cachedRequests;
+
+    /**
+     * @param datasetLevelRequests incremented by the fetches of the latest version, role assignments and depositor
+     * @param cachedRequests       incremented when the depositor came from the user cache instead of a fetch
+     */
+    public DatasetFetchPlan(
+        CompletableFuture<Optional<List<DatasetVersion>>> versions,
+        CompletableFuture<Optional<DatasetLatestVersion>> latestVersion,
+        CompletableFuture<Optional<String>> depositor,
+        AtomicInteger datasetLevelRequests,
+        AtomicInteger cachedRequests
+    ) {
+        this.versions = versions;
+        this.latestVersion = latestVersion;
+        this.depositor = depositor;
+        this.datasetLevelRequests = datasetLevelRequests;
+        this.cachedRequests = cachedRequests;
+    }
+
+    public Optional<List<DatasetVersion>> getVersions() {
+        return versions.join();
+    }
+
+    /**
+     * Sets the fields that are the same for all versions of the dataset.
+     */
+    public void applyTo(ActualDataset actualDataset) {
+        latestVersion.join().ifPresent(latestVersion -> {
+            if (latestVersion.getPublicationDate() != null) // probably DRAFT
+                actualDataset.setCitationYear(latestVersion.getPublicationDate().substring(0, 4));
+            if (latestVersion.getLatestVersion() != null) // probably DEACCESSIONED
+                actualDataset.setFileAccessRequest(latestVersion.getLatestVersion().getFileAccessRequest());
+        });
+        depositor.join().ifPresent(actualDataset::setDepositor);
+    }
+
+    /**
+     * @param nrOfVersions the number of versions that used the dataset level resources
+     * @return the number of requests a fetch per version without user cache would have needed on top of this plan
+     */
+    public int avoidedRequests(int nrOfVersions) {
+        latestVersion.join();
+        depositor.join();
+        return Math.max(0, nrOfVersions - 1) * datasetLevelRequests.get() + Math.max(1, nrOfVersions) * cachedRequests.get();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.knaw.dans.lib.dataverse.DataverseClient;
+import nl.knaw.dans.lib.dataverse.SearchOptions;
+import nl.knaw.dans.lib.dataverse.model.search.ResultItem;
+import nl.knaw.dans.lib.dataverse.model.search.SearchItemType;
+import nl.knaw.dans.lib.dataverse.model.search.SearchResult;
+import nl.knaw.dans.migration.config.SearchConfig;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+
+/**
+ * Searches datasets page by page, the next pages are fetched while the current one is processed.
+ */
+public class DatasetSearch {
+    private static final Logger log = LoggerFactory.getLogger(DatasetSearch.class);
+
+    private final DataverseClient client;
+    private final AdaptiveLimiter limiter;
+    private final SearchConfig config;
+    private final URI baseUrl;
+    private final String apiKey;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * @param baseUrl and apiKey of the client, for the requests that the client does not support
+     */
+    public DatasetSearch(DataverseClient client, AdaptiveLimiter limiter, SearchConfig config, URI baseUrl, @Nullable String apiKey) {
+        this.client = client;
+        this.limiter = limiter;
+        this.config = config;
+        this.baseUrl = baseUrl;
+        this.apiKey = apiKey;
+    }
+
+    public PrefetchingIterator<ResultItem> find(String query, String... filterQueries) {
+        log.info("searching " + query + " " + String.join(" ", filterQueries));
+        return new PrefetchingIterator<>(
+            start -> {
+                SearchOptions searchOptions = new SearchOptions();
+                searchOptions.setTypes(singletonList(SearchItemType.dataset));
+                searchOptions.setFilterQueries(Arrays.asList(filterQueries));
+                searchOptions.setPerPage(config.getPageSize());
+                searchOptions.setStart(start);
+                SearchResult result = limiter.call(() -> client.search().find(query, searchOptions).getData());
+                return new PrefetchingIterator.Results<>(result.getItems(), result.getTotalCount());
+            },
+            config.getReadAhead()
+        );
+    }
+
+    /**
+     * Searches datasets with their bag ids, requested as metadata_fields which the client library does not support.
+     *
+     * @return the bag ids per DOI of the hits, without bag ids if the Dataverse does not return the field
+     */
+    public Map<String, Set<String>> findBagIds(String query) throws Exception {
+        log.debug("searching bag ids {}", query);
+        Map<String, Set<String>> bagIds = new HashMap<>();
+        int start = 0;
+        while (true) {
+            HttpGet request = new HttpGet(StringUtils.removeEnd(baseUrl.toString(), "/") + "/api/search?type=dataset&metadata_fields=dansDataVaultMetadata:dansBagId"
+                + "&per_page=" + config.getPageSize() + "&start=" + start + "&q=" + URLEncoder.encode(query, UTF_8.name()));
+            if (apiKey != null)
+                request.addHeader("X-Dataverse-key", apiKey);
+            String response = limiter.call(() -> HttpHelper.executeReq(request, true));
+            JsonNode data = response.isEmpty() ? mapper.createObjectNode() : mapper.readTree(response).path("data");
+            int items = addBagIds(data, bagIds);
+            start += items;
+            if (items == 0 || start >= data.path("total_count").asInt())
+                return bagIds;
+        }
+    }
+
+    /**
+     * @return the number of items of the search result
+     */
+    static int addBagIds(JsonNode data, Map<String, Set<String>> bagIds) {
+        JsonNode items = data.path("items");
+        for (JsonNode item : items) {
+            Set<String> ids = bagIds.computeIfAbsent(item.path("global_id").asText(), doi -> new HashSet<>());
+            for (JsonNode field : item.path("metadataBlocks").path("dansDataVaultMetadata").path("fields"))
+                if ("dansBagId".equals(field.path("typeName").asText())) {
+                    JsonNode value = field.path("value");
+                    if (value.isArray())
+                        value.forEach(v -> ids.add(v.asText()));
+                    else
+                        ids.add(value.asText());
+                }
+        }
+        return items.size();
+    }
+}
@@ -17,10 +17,10 @@ package nl.knaw.dans.migration.core;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import com.github.benmanes.caffeine.cache.AsyncCache;
 import com.github.benmanes.caffeine.cache.CacheLoader;
 import io.dropwizard.hibernate.UnitOfWork;
 import nl.knaw.dans.lib.dataverse.DataverseClient;
-import nl.knaw.dans.lib.dataverse.DataverseResponse;
 import nl.knaw.dans.lib.dataverse.model.RoleAssignmentReadOnly;
 import nl.knaw.dans.lib.dataverse.model.dataset.DatasetLatestVersion;
 import nl.knaw.dans.lib.dataverse.model.dataset.DatasetVersion;
@@ -28,40 +28,124 @@ import nl.knaw.dans.lib.dataverse.model.file.DataFile;
 import nl.knaw.dans.lib.dataverse.model.file.Embargo;
 import nl.knaw.dans.lib.dataverse.model.file.FileMeta;
 import nl.knaw.dans.lib.dataverse.model.user.AuthenticatedUser;
+import nl.knaw.dans.migration.config.ActualWriterConfig.Layout;
+import nl.knaw.dans.migration.config.UserCacheConfig;
 import nl.knaw.dans.migration.core.tables.ActualDataset;
 import nl.knaw.dans.migration.core.tables.ActualFile;
+import nl.knaw.dans.migration.core.tables.DatasetFingerprint;
+import nl.knaw.dans.migration.core.tables.DatasetFingerprint.Side;
+import nl.knaw.dans.migration.core.tables.LoadProgress;
+import nl.knaw.dans.migration.core.tables.LoadRun;
 import nl.knaw.dans.migration.db.ActualDatasetDAO;
 import nl.knaw.dans.migration.db.ActualFileDAO;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
+import nl.knaw.dans.migration.db.ActualFileRangeDAO;
+import nl.knaw.dans.migration.db.ActualTables;
+import nl.knaw.dans.migration.db.ActualUpserter;
+import nl.knaw.dans.migration.db.ActualWriter;
+import nl.knaw.dans.migration.db.ChecksumColumnsDAO;
+import nl.knaw.dans.migration.db.DatasetFingerprintDAO;
+import nl.knaw.dans.migration.db.LoadProgressDAO;
+import nl.knaw.dans.migration.db.LoadRunDAO;
+import nl.knaw.dans.migration.db.NormalisedFilesDAO;
+import nl.knaw.dans.migration.db.StagingTablesDAO;
 import org.apache.commons.lang3.StringUtils;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class DataverseLoader {
     private static final Logger log = LoggerFactory.getLogger(DataverseLoader.class);
 
     private final ActualFileDAO actualFileDAO;
+    private final ActualFileRangeDAO actualFileRangeDAO;
+    private final NormalisedFilesDAO normalisedFilesDAO;
+    private final Layout layout;
     private final DataverseClient client;
     private final ActualDatasetDAO actualDatasetDAO;
+    private final LoadProgressDAO loadProgressDAO;
+    private final LoadRunDAO loadRunDAO;
+    private final StagingTablesDAO stagingTablesDAO;
+    private final ChecksumColumnsDAO checksumColumnsDAO;
+    private final DatasetFingerprintDAO datasetFingerprintDAO;
+    private final ActualWriter actualWriter;
+    private final ActualUpserter actualUpserter;
+    private final Executor fetchExecutor;
+    private final LoadSummary summary;
+    private final AsyncCache<String, AuthenticatedUser> users;
+    private final ResponseStore responseStore;
+    private final CacheLoader<String, AuthenticatedUser> userLoader;
+    private final CacheLoader<String, List<DatasetVersion>> versionsLoader;
+    private final CacheLoader<String, List<RoleAssignmentReadOnly>> rolesLoader;
+    private final CacheLoader<String, DatasetLatestVersion> latestVersionLoader;
 
-    public DataverseLoader(DataverseClient client, ActualFileDAO actualFileDAO, ActualDatasetDAO actualDatasetDAO) {
+    public DataverseLoader(DataverseClient client, ActualFileDAO actualFileDAO, ActualFileRangeDAO actualFileRangeDAO, NormalisedFilesDAO normalisedFilesDAO,
+        Layout layout, ActualDatasetDAO actualDatasetDAO, LoadProgressDAO loadProgressDAO, LoadRunDAO loadRunDAO, StagingTablesDAO stagingTablesDAO,
+        ChecksumColumnsDAO checksumColumnsDAO, DatasetFingerprintDAO datasetFingerprintDAO, ActualWriter actualWriter, ActualUpserter actualUpserter,
+        Executor fetchExecutor, LoadSummary summary, UserCacheConfig userCacheConfig, ResponseStore responseStore, AdaptiveLimiter limiter) {
         this.actualFileDAO = actualFileDAO;
+        this.actualFileRangeDAO = actualFileRangeDAO;
+        this.normalisedFilesDAO = normalisedFilesDAO;
+        this.layout = layout;
         this.client = client;
         this.actualDatasetDAO = actualDatasetDAO;
+        this.loadProgressDAO = loadProgressDAO;
+        this.loadRunDAO = loadRunDAO;
+        this.stagingTablesDAO = stagingTablesDAO;
+        this.checksumColumnsDAO = checksumColumnsDAO;
+        this.datasetFingerprintDAO = datasetFingerprintDAO;
+        this.actualWriter = actualWriter;
+        this.actualUpserter = actualUpserter;
+        this.fetchExecutor = fetchExecutor;
+        this.summary = summary;
+        this.users = userCacheConfig.buildAsync();
+        summary.setUserCacheStats(() -> users.synchronous().stats());
+        this.responseStore = responseStore;
+        summary.setRateLimiter(limiter);
+        this.userLoader = responseStore.through("users", responseStore.type(AuthenticatedUser.class),
+            id -> limiter.call(() -> client.admin().listSingleUser(id).getData()));
+        this.versionsLoader = responseStore.through("versions", responseStore.listType(DatasetVersion.class),
+            id -> limiter.call(() -> client.dataset(id).getAllVersions().getData()));
+        this.rolesLoader = responseStore.through("roles", responseStore.listType(RoleAssignmentReadOnly.class),
+            id -> limiter.call(() -> client.dataset(id).listRoleAssignments().getData()));
+        this.latestVersionLoader = responseStore.through("latest-versions", responseStore.type(DatasetLatestVersion.class),
+            id -> limiter.call(() -> client.dataset(id).getLatestVersion().getData()));
     }
 
+    /**
+     * Deletes the actual rows of the DOIs with a few statements.
+     *
+     * @param dois with or without the prefix "doi:"
+     */
     @UnitOfWork("hibernate")
-    public void deleteCsvDOIs(CSVParser csvRecords, Mode mode) {
-        for (CSVRecord r : csvRecords) {
-            FedoraToBagCsv fedoraToBagCsv = new FedoraToBagCsv(r);
-            if (fedoraToBagCsv.getComment().contains("OK")) {
-                deleteByDoi(fedoraToBagCsv.getDoi(), mode);
-            }
+    public void deleteDois(Collection<String> dois, Mode mode) {
+        List<String> shortDois = dois.stream()
+            .map(doi -> doi.replace("doi:", ""))
+            .collect(Collectors.toList());
+        if (mode.doFiles()) {
+            if (layout == Layout.VERSION_RANGES)
+                actualFileRangeDAO.deleteByDois(shortDois);
+            else if (layout == Layout.NORMALISED)
+                normalisedFilesDAO.deleteByDois(shortDois);
+            else
+                actualFileDAO.deleteByDois(shortDois);
+            datasetFingerprintDAO.deleteByDois(Side.ACTUAL, shortDois);
         }
+        if (mode.doDatasets())
+            actualDatasetDAO.deleteByDois(shortDois);
     }
 
     @UnitOfWork("hibernate")
@@ -71,35 +155,175 @@ public class DataverseLoader {
 
     @UnitOfWork("hibernate")
     public void deleteAll(Mode mode) {
-        if (mode.doFiles())
-            actualFileDAO.deleteAll();
+        if (mode.doFiles()) {
+            if (layout == Layout.VERSION_RANGES)
+                actualFileRangeDAO.deleteAll();
+            else if (layout == Layout.NORMALISED)
+                normalisedFilesDAO.deleteAll();
+            else
+                actualFileDAO.deleteAll();
+            datasetFingerprintDAO.deleteAll(Side.ACTUAL);
+        }
         if (mode.doDatasets())
             actualDatasetDAO.deleteAll();
     }
 
     public void deleteByDoi(String doi, Mode mode) {
-        if (mode.doFiles())
-            actualFileDAO.deleteByDoi(doi);
+        if (mode.doFiles()) {
+            if (layout == Layout.VERSION_RANGES)
+                actualFileRangeDAO.deleteByDoi(doi);
+            else if (layout == Layout.NORMALISED)
+                normalisedFilesDAO.deleteByDoi(doi);
+            else
+                actualFileDAO.deleteByDoi(doi);
+            datasetFingerprintDAO.deleteByDois(Side.ACTUAL, Collections.singletonList(doi));
+        }
         if (mode.doDatasets())
             actualDatasetDAO.deleteByDoi(doi);
     }
 
+    /**
+     * Creates staging tables without indexes for the actual rows of the mode.
+     *
+     * @param keepExisting continue with the staging tables of an interrupted run
+     */
     @UnitOfWork("hibernate")
-    public void loadFromDataset(String doi, Mode mode) {
-        if (StringUtils.isEmpty(doi))
-            return; // workaround
-        log.info("Reading {} from dataverse", doi);
+    public void prepareStaging(Mode mode, boolean keepExisting) {
+        stagingTablesDAO.create(mode.doFiles(), mode.doDatasets(), keepExisting);
+    }
+
+    @UnitOfWork("hibernate")
+    public void indexStaging(Mode mode) {
+        stagingTablesDAO.buildIndexes(mode.doFiles(), mode.doDatasets());
+    }
 
-        CacheLoader<String, DataverseResponse<AuthenticatedUser>> userLoader = id -> client.admin().listSingleUser(id);
-        CacheLoader<String, DataverseResponse<List<DatasetVersion>>> versionsLoader = id -> client.dataset(id).getAllVersions();
-        CacheLoader<String, DataverseResponse<List<RoleAssignmentReadOnly>>> rolesLoader = id -> client.dataset(id).listRoleAssignments();
-        CacheLoader<String, DataverseResponse<DatasetLatestVersion>> latestVersionLoader = id -> client.dataset(id).getLatestVersion();
+    /**
+     * Replaces the actual tables of the mode with the staging tables in a single transaction.
+     */
+    @UnitOfWork("hibernate")
+    public void swapStaging(Mode mode) {
+        checksumColumnsDAO.dropHexViews();
+        stagingTablesDAO.swap(mode.doFiles(), mode.doDatasets());
+        checksumColumnsDAO.createHexViews();
+    }
+
+    @UnitOfWork("hibernate")
+    public Set<String> findLoadedDois(String runId) {
+        return loadProgressDAO.findDois(runId);
+    }
+
+    /**
+     * Writes the actual rows of the datasets in a single transaction.
+     *
+     * @param tables the live tables or the staging tables of a full load
+     * @param runId  if not null, the DOIs are registered as loaded by this run in the same transaction as the actual rows
+     * @return the number of written rows
+     */
+    @UnitOfWork("hibernate")
+    public int writeBatch(List<LoadedDataset> batch, Mode mode, ActualTables tables, @Nullable String runId) {
+        int rows = 0;
+        for (LoadedDataset dataset : batch) {
+            rows += actualWriter.write(tables, dataset.getDatasets(), dataset.getFiles());
+            if (runId != null)
+                loadProgressDAO.create(new LoadProgress(runId, dataset.getDoi()));
+        }
+        if (mode.doFiles()) {
+            // replaced rather than inserted: a resumed run or a reload by partition does not delete all fingerprints up front,
+            // the staging table is new for each full load
+            if (tables == ActualTables.LIVE)
+                datasetFingerprintDAO.deleteByDois(Side.ACTUAL, batch.stream()
+                    .map(dataset -> dataset.getDoi().replace("doi:", ""))
+                    .collect(Collectors.toList()));
+            datasetFingerprintDAO.insert(tables, fingerprints(batch));
+        }
+        return rows;
+    }
 
+    /**
+     * Like {@link #writeBatch(List, Mode, ActualTables, String)} into the live tables, but instead of inserting into emptied tables,
+     * it inserts, updates and deletes only the actual rows that differ from the stored rows of the DOIs.
+     *
+     * @return the number of inserted, updated and deleted rows
+     */
+    @UnitOfWork("hibernate")
+    public int upsertBatch(List<LoadedDataset> batch, Mode mode, @Nullable String runId) {
+        List<String> shortDois = batch.stream()
+            .map(dataset -> dataset.getDoi().replace("doi:", ""))
+            .collect(Collectors.toList());
+        int rows = 0;
+        if (mode.doDatasets())
+            rows += actualUpserter.upsertDatasets(shortDois, batch.stream()
+                .flatMap(dataset -> dataset.getDatasets().stream())
+                .collect(Collectors.toList()));
+        if (mode.doFiles()) {
+            rows += actualUpserter.upsertFiles(shortDois, batch.stream()
+                .flatMap(dataset -> dataset.getFiles().stream())
+                .collect(Collectors.toList()));
+            datasetFingerprintDAO.deleteByDois(Side.ACTUAL, shortDois);
+            datasetFingerprintDAO.insert(ActualTables.LIVE, fingerprints(batch));
+        }
+        if (runId != null)
+            for (LoadedDataset dataset : batch)
+                loadProgressDAO.create(new LoadProgress(runId, dataset.getDoi()));
+        return rows;
+    }
+
+    /**
+     * The latest version comes from the datasets, so only mode BOTH has fingerprints. Without one, compare compares the rows of the DOI.
+     */
+    private static List<DatasetFingerprint> fingerprints(List<LoadedDataset> batch) {
+        return batch.stream()
+            .map(dataset -> Fingerprint.ofLatestVersion(dataset.getDatasets(), dataset.getFiles()))
+            .filter(Optional::isPresent)
+            .map(Optional::get)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Registers the start of a run unless it is resumed.
+     */
+    @UnitOfWork("hibernate")
+    public void startRun(String runId, String kind) {
+        if (!loadRunDAO.find(runId).isPresent())
+            loadRunDAO.create(new LoadRun(runId, kind, Instant.now()));
+    }
+
+    @UnitOfWork("hibernate")
+    public void finishRun(String runId) {
+        loadRunDAO.finish(runId);
+    }
+
+    /**
+     * @return the start of the last completed run of all datasets or datasets modified since some time
+     */
+    @UnitOfWork("hibernate")
+    public Optional<Instant> findLastRunStart() {
+        return loadRunDAO.findLastFinished().map(LoadRun::getStartedAt);
+    }
+
+    /**
+     * Reads the versions of a dataset from Dataverse, no database access.
+     *
+     * @return empty if the versions could not be read
+     */
+    public Optional<LoadedDataset> fetchDataset(String doi, Mode mode) {
+        if (StringUtils.isEmpty(doi))
+            return Optional.empty(); // workaround
+        log.info("Reading {} from {}", doi, responseStore.isReplay() ? "response store" : "dataverse");
+
+        DatasetFetchPlan plan = startFetch(doi, mode);
         String shortDoi = doi.replace("doi:", "");
-        load(doi, versionsLoader, DatasetVersion.class, doi).ifPresent(versions ->
-            versions.forEach(v -> {
+        Optional<List<DatasetVersion>> loadedVersions = plan.getVersions();
+        if (!loadedVersions.isPresent())
+            summary.addFailedDataset(doi);
+        return loadedVersions.map(versions -> {
+            List<ActualDataset> datasets = new ArrayList<>();
+            List<ActualFile> files = new ArrayList<>();
+            int nrOfVersions = 0;
+            for (DatasetVersion v : versions) {
                 if (v == null || v.getVersionNumber() == null || v.getVersionMinorNumber() == null)
-                    return;
+                    continue;
+                nrOfVersions++;
                 if (mode.doDatasets()) {
                     ActualDataset actualDataset = new ActualDataset();
                     actualDataset.setMajorVersionNr(v.getVersionNumber());
@@ -112,39 +336,73 @@ public class DataverseLoader {
                         actualDataset.setLicenseUri(v.getLicense().getUri().toString());
                     }
                     actualDataset.setDoi(shortDoi);
-                    load(doi, latestVersionLoader, DatasetLatestVersion.class, doi).ifPresent(latestVersion -> {
-                        if (latestVersion.getPublicationDate() != null) // probably DRAFT
-                            actualDataset.setCitationYear(latestVersion.getPublicationDate().substring(0, 4));
-                        if (latestVersion.getLatestVersion() != null) // probably DEACCESSIONED
-                            actualDataset.setFileAccessRequest(latestVersion.getLatestVersion().getFileAccessRequest());
-                    });
-                    load(doi, rolesLoader, RoleAssignmentReadOnly.class, doi).ifPresent(roles -> {
-                        String depositor = roles.stream()
-                            .filter(ra -> "contributorplus".equals(ra.get_roleAlias()))
-                            .findFirst()
-                            .map(RoleAssignmentReadOnly::getAssignee)
-                            .orElse("contributorplus.not.found")
-                            .replace("@", "");
-                        log.trace("depositor: " + depositor);
-                        actualDataset.setDepositor(depositor); // falling back to ID if email is not found
-                        load(depositor, userLoader, AuthenticatedUser.class, doi).ifPresent(user ->
-                            actualDataset.setDepositor(user.getEmail())
-                        );
-                    });
-                    actualDatasetDAO.create(actualDataset);
+                    plan.applyTo(actualDataset);
+                    datasets.add(actualDataset);
                 }
                 if (mode.doFiles())
-                    loadFiles(shortDoi, v);
+                    loadFiles(shortDoi, v, files);
+            }
+            return new LoadedDataset(doi, datasets, files, nrOfVersions, plan.avoidedRequests(nrOfVersions));
+        });
+    }
+
+    private DatasetFetchPlan startFetch(String doi, Mode mode) {
+        // the dataset level resources are independent of each other, only the depositor needs the role assignments
+        AtomicInteger datasetLevelRequests = new AtomicInteger();
+        AtomicInteger cachedRequests = new AtomicInteger();
+        CompletableFuture<Optional<List<DatasetVersion>>> versionsFuture = fetch(() -> load(doi, versionsLoader, DatasetVersion.class, doi));
+        CompletableFuture<Optional<DatasetLatestVersion>> latestVersionFuture = mode.doDatasets()
+            ? fetch(() -> {
+                datasetLevelRequests.incrementAndGet();
+                return load(doi, latestVersionLoader, DatasetLatestVersion.class, doi);
             })
-        );
+            : CompletableFuture.completedFuture(Optional.empty());
+        CompletableFuture<Optional<String>> depositorFuture = mode.doDatasets()
+            ? fetchDepositor(doi, datasetLevelRequests, cachedRequests)
+            : CompletableFuture.completedFuture(Optional.empty());
+        return new DatasetFetchPlan(versionsFuture, latestVersionFuture, depositorFuture, datasetLevelRequests, cachedRequests);
+    }
+
+    private CompletableFuture<Optional<String>> fetchDepositor(String doi, AtomicInteger datasetLevelRequests, AtomicInteger cachedRequests) {
+        return fetch(() -> {
+            datasetLevelRequests.incrementAndGet();
+            return load(doi, rolesLoader, RoleAssignmentReadOnly.class, doi);
+        }).thenCompose(roles -> {
+            if (!roles.isPresent())
+                return CompletableFuture.completedFuture(Optional.<String> empty());
+            String depositor = roles.get().stream()
+                .filter(ra -> "contributorplus".equals(ra.get_roleAlias()))
+                .findFirst()
+                .map(RoleAssignmentReadOnly::getAssignee)
+                .orElse("contributorplus.not.found")
+                .replace("@", "");
+            log.trace("depositor: " + depositor);
+            // the first dataset of a depositor does the request, datasets asking meanwhile wait for that one
+            AtomicBoolean miss = new AtomicBoolean();
+            CompletableFuture<AuthenticatedUser> account = users.get(depositor, (id, executor) -> {
+                // called on a cache miss only, before get returns
+                miss.set(true);
+                datasetLevelRequests.incrementAndGet();
+                return fetch(() -> load(id, userLoader, AuthenticatedUser.class, doi).orElse(null));
+            });
+            if (!miss.get())
+                cachedRequests.incrementAndGet();
+            return account
+                // falling back to ID if email is not found
+                .thenApply(user -> Optional.of(Optional.ofNullable(user)
+                    .map(AuthenticatedUser::getEmail)
+                    .orElse(depositor)));
+        });
+    }
+
+    private <T> CompletableFuture<T> fetch(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, fetchExecutor);
     }
 
-    private <T> Optional<T> load(String id, CacheLoader<String, DataverseResponse<T>> loader, Class<?> clazz, String doi) {
+    private <T> Optional<T> load(String id, CacheLoader<String, T> loader, Class<?> clazz, String doi) {
         // actually T might be a List of clazz
         try {
-            DataverseResponse<T> response = loader.load(id);
-            if (null != response)
-                return Optional.ofNullable(response.getData());
+            return Optional.ofNullable(loader.load(id));
         }
         catch (JsonParseException | UnrecognizedPropertyException  e) {
             // e.g: Could not parse AuthenticatedUser(user001) ... JsonParseException Unexpected character ('<' ...)
@@ -161,11 +419,11 @@ public class DataverseLoader {
         return Optional.empty();
     }
 
-    private void loadFiles(String doi, DatasetVersion v) {
+    private void loadFiles(String doi, DatasetVersion v, List<ActualFile> files) {
         for (FileMeta f : v.getFiles()) {
-            actualFileDAO.create(toActual(f, doi, v));
+            files.add(toActual(f, doi, v));
         }
-        log.info("Stored {} actual files for DOI {}, Version {}.{} State {}", v.getFiles().size(), doi, v.getVersionNumber(), v.getVersionMinorNumber(), v.getVersionState());
+        log.info("Fetched {} actual files for DOI {}, Version {}.{} State {}", v.getFiles().size(), doi, v.getVersionNumber(), v.getVersionMinorNumber(), v.getVersionState());
     }
 
     private ActualFile toActual(FileMeta fileMeta, String doi, DatasetVersion v) {
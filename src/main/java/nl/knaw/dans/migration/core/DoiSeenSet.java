@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Remembers which DOIs were seen by a 64-bit fingerprint per DOI, kept in an open addressing table outside the heap.
+ * A million DOIs take 16 MB. Two different DOIs with the same fingerprint are possible but very unlikely
+ * (about one in 10^7 for a million DOIs), the second one would be skipped.
+ * Not thread safe, meant for the single thread that reads the search results.
+ */
+public class DoiSeenSet {
+    private static final Logger log = LoggerFactory.getLogger(DoiSeenSet.class);
+
+    private static final int MAX_SLOTS = 1 << 27;
+
+    // an empty slot contains zero, no fingerprint is zero
+    private ByteBuffer slots;
+    private int mask;
+    private int size = 0;
+
+    /**
+     * @param expectedDois number of DOIs that fit without growing the table
+     */
+    public DoiSeenSet(int expectedDois) {
+        allocate(Integer.highestOneBit(Math.max(16, Math.min(expectedDois, MAX_SLOTS / 2)) * 2 - 1) << 1);
+    }
+
+    private void allocate(int nrOfSlots) {
+        slots = ByteBuffer.allocateDirect(nrOfSlots * Long.BYTES);
+        mask = nrOfSlots - 1;
+    }
+
+    /**
+     * @return true if the DOI was not seen before
+     */
+    public boolean add(String doi) {
+        if (size >= (mask + 1) / 4 * 3)
+            grow();
+        if (!insert(fingerprint(doi)))
+            return false;
+        size++;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private boolean insert(long fingerprint) {
+        int slot = (int) fingerprint & mask;
+        while (true) {
+            long found = slots.getLong(slot * Long.BYTES);
+            if (found == 0) {
+                slots.putLong(slot * Long.BYTES, fingerprint);
+                return true;
+            }
+            if (found == fingerprint)
+                return false;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void grow() {
+        int nrOfSlots = mask + 1;
+        if (nrOfSlots >= MAX_SLOTS)
+            throw new IllegalStateException("More than " + size + " DOIs seen");
+        log.warn("More DOIs than expected, growing the table of seen DOIs to {} MB", 2L * nrOfSlots * Long.BYTES >> 20);
+        ByteBuffer old = slots;
+        allocate(2 * nrOfSlots);
+        for (int i = 0; i < nrOfSlots; i++) {
+            long fingerprint = old.getLong(i * Long.BYTES);
+            if (fingerprint != 0)
+                insert(fingerprint);
+        }
+    }
+
+    /**
+     * FNV-1a followed by the finalizer of MurmurHash3 to spread the bits over the slots.
+     */
+    static long fingerprint(String doi) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < doi.length(); i++) {
+            h ^= doi.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+}
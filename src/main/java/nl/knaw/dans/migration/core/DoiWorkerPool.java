@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * One producer (the caller of {@link #submit(String)}) hands DOIs to a fixed number of worker threads.
+ * The queue in between is bounded, so the producer blocks when the workers fall behind.
+ */
+public class DoiWorkerPool implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(DoiWorkerPool.class);
+
+    // compared by reference, no DOI can be this instance
+    private static final String END_OF_WORK = new String("");
+
+    private final BlockingQueue<String> queue;
+    private final List<Thread> workers = new ArrayList<>();
+    private final Consumer<String> action;
+    private final LoadSummary summary;
+    // submitted but not yet processed, guarded by this
+    private int pending = 0;
+
+    /**
+     * @param summary counts a DOI of which the action fails as a failed dataset
+     */
+    public DoiWorkerPool(int threads, int queueCapacity, Consumer<String> action, LoadSummary summary) {
+        if (threads < 1)
+            throw new IllegalArgumentException("at least one thread required, got " + threads);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.action = action;
+        this.summary = summary;
+        for (int i = 1; i <= threads; i++) {
+            Thread worker = new Thread(this::work, "loader-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    public void submit(String doi) throws InterruptedException {
+        synchronized (this) {
+            pending++;
+        }
+        queue.put(doi);
+    }
+
+    /**
+     * Waits until the DOIs submitted so far are processed, the workers stay available for more.
+     */
+    public synchronized void awaitIdle() throws InterruptedException {
+        while (pending > 0)
+            wait();
+    }
+
+    private synchronized void done() {
+        if (--pending == 0)
+            notifyAll();
+    }
+
+    private void work() {
+        while (true) {
+            String doi;
+            try {
+                doi = queue.take();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (doi == END_OF_WORK)
+                return;
+            try {
+                action.accept(doi);
+                log.trace("done with {}", doi);
+            }
+            catch (RuntimeException e) {
+                log.error("Could not load {}: {}", doi, e.getMessage(), e);
+                summary.addFailedDataset(doi);
+            }
+            finally {
+                done();
+            }
+        }
+    }
+
+    /**
+     * Waits until all submitted DOIs are processed.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        for (Thread ignored : workers)
+            queue.put(END_OF_WORK);
+        for (Thread worker : workers)
+            worker.join();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import io.dropwizard.hibernate.UnitOfWork;
+import nl.knaw.dans.migration.core.tables.DatasetFingerprint;
+import nl.knaw.dans.migration.core.tables.DatasetFingerprint.Side;
+import nl.knaw.dans.migration.core.tables.FileDifference;
+import nl.knaw.dans.migration.db.ActualTables;
+import nl.knaw.dans.migration.db.DatasetFingerprintDAO;
+import nl.knaw.dans.migration.db.FileDifferenceDAO;
+import nl.knaw.dans.migration.db.FileRowsDAO;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The transactions of the compare command: each page and each batch of differences has its own.
+ */
+public class FileComparer {
+    private final FileRowsDAO fileRowsDAO;
+    private final FileDifferenceDAO fileDifferenceDAO;
+    private final DatasetFingerprintDAO datasetFingerprintDAO;
+
+    public FileComparer(FileRowsDAO fileRowsDAO, FileDifferenceDAO fileDifferenceDAO, DatasetFingerprintDAO datasetFingerprintDAO) {
+        this.fileRowsDAO = fileRowsDAO;
+        this.fileDifferenceDAO = fileDifferenceDAO;
+        this.datasetFingerprintDAO = datasetFingerprintDAO;
+    }
+
+    /**
+     * @param dois without prefix, null for all
+     */
+    @UnitOfWork("hibernate")
+    public List<FileRow> expectedPage(@Nullable Collection<String> dois, FileRow after, int limit) {
+        return fileRowsDAO.expectedPage(dois, after, limit);
+    }
+
+    /**
+     * @param dois without prefix, null for all
+     */
+    @UnitOfWork("hibernate")
+    public List<FileRow> actualPage(@Nullable Collection<String> dois, FileRow after, int limit) {
+        return fileRowsDAO.actualPage(dois, after, limit);
+    }
+
+    @UnitOfWork("hibernate")
+    public List<DatasetFingerprint> fingerprintPage(DatasetFingerprint after, int limit) {
+        return datasetFingerprintDAO.page(after, limit);
+    }
+
+    @UnitOfWork("hibernate")
+    public void clearFingerprints(Side side) {
+        datasetFingerprintDAO.deleteAll(side);
+    }
+
+    @UnitOfWork("hibernate")
+    public void writeFingerprints(List<DatasetFingerprint> fingerprints) {
+        datasetFingerprintDAO.insert(ActualTables.LIVE, fingerprints);
+    }
+
+    @UnitOfWork("hibernate")
+    public void clearDifferences() {
+        fileDifferenceDAO.deleteAll();
+    }
+
+    @UnitOfWork("hibernate")
+    public void writeDifferences(List<FileDifference> differences) {
+        fileDifferenceDAO.insert(differences);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import nl.knaw.dans.migration.core.tables.FileDifference;
+import nl.knaw.dans.migration.core.tables.FileDifference.Category;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Sort-merge diff of two streams of files ordered by DOI and path.
+ * Only the current row of each side is kept in memory.
+ */
+public class FileComparison {
+
+    /**
+     * Code point order, the same as the order of the UTF-8 bytes that PostgreSQL sorts with COLLATE "C".
+     */
+    static final Comparator<String> codePointOrder = (a, b) -> {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb)
+                return Integer.compare(ca, cb);
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Boolean.compare(i < a.length(), j < b.length());
+    };
+
+    private static final Comparator<FileRow> keyOrder = Comparator
+        .comparing(FileRow::getDoi, codePointOrder)
+        .thenComparing(FileRow::getPath, codePointOrder);
+
+    private final Map<Category, Long> counts = new EnumMap<>(Category.class);
+    private final Consumer<FileDifference> differences;
+
+    public FileComparison(Consumer<FileDifference> differences) {
+        this.differences = differences;
+    }
+
+    /**
+     * May be called again for further DOIs, the counts add up.
+     *
+     * @param expected rows of expected_files, ordered by DOI and path
+     * @param actual   rows of the compared version of actual_files, ordered by DOI and path
+     * @return the number of differences per category
+     */
+    public Map<Category, Long> compare(Iterator<FileRow> expected, Iterator<FileRow> actual) {
+        FileRow e = next(expected);
+        FileRow a = next(actual);
+        while (e != null || a != null) {
+            int order = e == null ? 1
+                : a == null ? -1
+                : keyOrder.compare(e, a);
+            if (order < 0) {
+                report(e, Category.MISSING, null, null);
+                e = next(expected);
+            }
+            else if (order > 0) {
+                report(a, Category.EXTRA, null, null);
+                a = next(actual);
+            }
+            else {
+                compareValues(e, a);
+                e = next(expected);
+                a = next(actual);
+            }
+        }
+        return counts;
+    }
+
+    public Map<Category, Long> getCounts() {
+        return counts;
+    }
+
+    private void compareValues(FileRow e, FileRow a) {
+        if (!Objects.equals(e.getSha1Checksum(), a.getSha1Checksum()))
+            report(e, Category.CHECKSUM_MISMATCH, e.getSha1Checksum(), a.getSha1Checksum());
+        if (!Objects.equals(e.getAccessibleTo(), a.getAccessibleTo()))
+            report(e, Category.ACCESSIBLE_TO_MISMATCH, e.getAccessibleTo(), a.getAccessibleTo());
+        if (!Objects.equals(e.getEmbargoDate(), a.getEmbargoDate()))
+            report(e, Category.EMBARGO_MISMATCH, e.getEmbargoDate(), a.getEmbargoDate());
+    }
+
+    private void report(FileRow row, Category category, String expectedValue, String actualValue) {
+        counts.merge(category, 1L, Long::sum);
+        differences.accept(new FileDifference(row.getDoi(), row.getPath(), category, expectedValue, actualValue));
+    }
+
+    private static FileRow next(Iterator<FileRow> rows) {
+        return rows.hasNext() ? rows.next() : null;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import java.util.Arrays;
+
+/**
+ * The compared columns of a row of expected_files or actual_files.
+ * The position holds the key columns that continue the keyset pagination after this row.
+ */
+public class FileRow {
+    private final String doi;
+    private final String path;
+    private final String sha1Checksum;
+    private final String accessibleTo;
+    private final String embargoDate;
+    private final Object[] position;
+
+    public FileRow(String doi, String path, String sha1Checksum, String accessibleTo, String embargoDate, Object... position) {
+        this.doi = doi;
+        this.path = path;
+        this.sha1Checksum = sha1Checksum;
+        this.accessibleTo = accessibleTo;
+        this.embargoDate = embargoDate;
+        this.position = position;
+    }
+
+    public String getDoi() {
+        return doi;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getSha1Checksum() {
+        return sha1Checksum;
+    }
+
+    public String getAccessibleTo() {
+        return accessibleTo;
+    }
+
+    public String getEmbargoDate() {
+        return embargoDate;
+    }
+
+    public Object[] getPosition() {
+        return position;
+    }
+
+    @Override
+    public String toString() {
+        return "FileRow{" +
+            "doi='" + doi + '\'' +
+            ", path='" + path + '\'' +
+            ", sha1Checksum='" + sha1Checksum + '\'' +
+            ", accessibleTo='" + accessibleTo + '\'' +
+            ", embargoDate='" + embargoDate + '\'' +
+            ", position=" + Arrays.toString(position) +
+            '}';
+    }
+}
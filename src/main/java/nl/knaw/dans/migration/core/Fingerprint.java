@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import nl.knaw.dans.migration.core.tables.ActualDataset;
+import nl.knaw.dans.migration.core.tables.ActualFile;
+import nl.knaw.dans.migration.core.tables.DatasetFingerprint;
+import nl.knaw.dans.migration.core.tables.DatasetFingerprint.Side;
+import nl.knaw.dans.migration.core.tables.Sha1Converter;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Sums a 64-bit hash of each file of a dataset, so the order of the files does not matter
+ * and a duplicate file does not cancel out as it would with XOR.
+ * The hashed values are those of the compare command: path, checksum, accessible_to and embargo date.
+ */
+public class Fingerprint {
+    private static final Comparator<ActualDataset> versionOrder = Comparator
+        .comparingInt(ActualDataset::getMajorVersionNr)
+        .thenComparingInt(ActualDataset::getMinorVersionNr);
+
+    private final MessageDigest digest;
+    private int files = 0;
+    private long value = 0;
+
+    public Fingerprint() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param sha1Checksum hex, as read from the database
+     */
+    public void add(String path, String sha1Checksum, String accessibleTo, String embargoDate) {
+        update(path);
+        update(sha1Checksum);
+        update(accessibleTo);
+        update(embargoDate);
+        value += ByteBuffer.wrap(digest.digest()).getLong();
+        files++;
+    }
+
+    // the length keeps the values apart and tells null from empty
+    private void update(String s) {
+        byte[] bytes = s == null ? new byte[0] : s.getBytes(UTF_8);
+        digest.update(ByteBuffer.allocate(4).putInt(s == null ? -1 : bytes.length).array());
+        digest.update(bytes);
+    }
+
+    public DatasetFingerprint toRow(String doi, Side side) {
+        return new DatasetFingerprint(doi, side, files, value);
+    }
+
+    /**
+     * The latest version is that of the datasets, as compare reads it from actual_datasets.
+     *
+     * @param datasets the versions of a dataset, with the DOI without prefix
+     * @param files    the actual files of all versions of the dataset
+     * @return the fingerprint of the files of the latest version, also without files; nothing without datasets
+     */
+    public static Optional<DatasetFingerprint> ofLatestVersion(List<ActualDataset> datasets, List<ActualFile> files) {
+        return datasets.stream().max(versionOrder).map(latest -> {
+            Fingerprint fingerprint = new Fingerprint();
+            for (ActualFile f : files)
+                if (f.getMajorVersionNr() == latest.getMajorVersionNr() && f.getMinorVersionNr() == latest.getMinorVersionNr()) {
+                    // the checksum as it comes back from the binary column
+                    String sha1 = Sha1Converter.toHex(Sha1Converter.toBytes(f.getSha1Checksum()));
+                    fingerprint.add(f.getActualPath(), sha1, f.getAccessibleTo(), f.getEmbargoDate());
+                }
+            return fingerprint.toRow(latest.getDoi(), Side.ACTUAL);
+        });
+    }
+
+    /**
+     * @param rows ordered by DOI
+     */
+    public static void collect(Iterator<FileRow> rows, Side side, Consumer<DatasetFingerprint> fingerprints) {
+        String doi = null;
+        Fingerprint fingerprint = null;
+        while (rows.hasNext()) {
+            FileRow row = rows.next();
+            if (!row.getDoi().equals(doi)) {
+                if (fingerprint != null)
+                    fingerprints.accept(fingerprint.toRow(doi, side));
+                doi = row.getDoi();
+                fingerprint = new Fingerprint();
+            }
+            fingerprint.add(row.getPath(), row.getSha1Checksum(), row.getAccessibleTo(), row.getEmbargoDate());
+        }
+        if (fingerprint != null)
+            fingerprints.accept(fingerprint.toRow(doi, side));
+    }
+
+    /**
+     * @param fingerprints of both sides, ordered by DOI
+     * @param dois         receives the DOIs of which the sides differ or only one side exists
+     */
+    public static void differingDois(Iterator<DatasetFingerprint> fingerprints, Consumer<String> dois) {
+        DatasetFingerprint previous = null;
+        while (fingerprints.hasNext()) {
+            DatasetFingerprint current = fingerprints.next();
+            if (previous != null && previous.getDoi().equals(current.getDoi())) {
+                if (!previous.matches(current))
+                    dois.accept(current.getDoi());
+                previous = null;
+            }
+            else {
+                if (previous != null)
+                    dois.accept(previous.getDoi());
+                previous = current;
+            }
+        }
+        if (previous != null)
+            dois.accept(previous.getDoi());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import nl.knaw.dans.migration.config.CommitPolicy;
+import nl.knaw.dans.migration.config.WriteBehindConfig;
+import nl.knaw.dans.migration.db.ActualTables;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.List;
+
+/**
+ * Fetcher threads read datasets from Dataverse, writer threads store them in the verification database.
+ */
+public class LoadPipeline implements AutoCloseable {
+    private final DataverseLoader proxy;
+    private final Mode mode;
+    private final CommitPolicy commitPolicy;
+    private final boolean upsert;
+    private final WriteBehind writers;
+    private final DoiWorkerPool fetchers;
+
+    /**
+     * @param runId  if not null, the written DOIs are registered as loaded by this run
+     * @param tables the tables to insert into, upserts apply to the live tables
+     * @param upsert compare with the stored rows of the DOIs instead of inserting into emptied tables
+     */
+    public LoadPipeline(DataverseLoader proxy, Mode mode, @Nullable String runId, int fetchThreads, WriteBehindConfig config, CommitPolicy commitPolicy,
+        ActualTables tables, boolean upsert, LoadSummary summary) {
+        this.proxy = proxy;
+        this.mode = mode;
+        this.commitPolicy = commitPolicy;
+        this.upsert = upsert;
+        this.writers = new WriteBehind(config.getWriters(), config.getQueueCapacity(), commitPolicy, upsert
+            ? batch -> proxy.upsertBatch(batch, mode, runId)
+            : batch -> proxy.writeBatch(batch, mode, tables, runId), summary);
+        this.fetchers = new DoiWorkerPool(fetchThreads, 2 * fetchThreads, doi -> proxy.fetchDataset(doi, mode).ifPresent(writers::put),
+            summary);
+    }
+
+    public void submit(String doi) throws InterruptedException {
+        fetchers.submit(doi);
+    }
+
+    /**
+     * Deletes the actual rows of the DOIs, then submits them to be loaded. It does not wait until they are written,
+     * so the caller can find the next batch meanwhile; {@link #awaitIdle()} does.
+     * The deletes commit after the number of datasets of the commit policy.
+     * When upserting, nothing is deleted up front.
+     */
+    public void reload(List<String> dois) throws InterruptedException {
+        if (!upsert)
+            for (int i = 0; i < dois.size(); i += commitPolicy.getDatasets())
+                proxy.deleteDois(dois.subList(i, Math.min(dois.size(), i + commitPolicy.getDatasets())), mode);
+        for (String doi : dois)
+            submit(doi);
+    }
+
+    /**
+     * Waits until the DOIs submitted so far are fetched and written.
+     */
+    public void awaitIdle() throws InterruptedException {
+        fetchers.awaitIdle();
+        writers.awaitIdle();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        try {
+            fetchers.close();
+        }
+        finally {
+            writers.close();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Counters of a load-from-dataverse run, shared by all loader threads.
+ */
+public class LoadSummary {
+    private static final Logger log = LoggerFactory.getLogger(LoadSummary.class);
+
+    private final AtomicLong datasets = new AtomicLong();
+    private final AtomicLong versions = new AtomicLong();
+    private final AtomicLong avoidedRequests = new AtomicLong();
+    private final AtomicLong failedDatasets = new AtomicLong();
+    private final AtomicLong unwrittenDatasets = new AtomicLong();
+    private final AtomicLong skippedDuplicates = new AtomicLong();
+    private final AtomicLong writtenRows = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private Supplier<CacheStats> userCacheStats = CacheStats::empty;
+    private AdaptiveLimiter rateLimiter;
+
+    public void addDataset(int nrOfVersions, int avoidedRequests) {
+        this.datasets.incrementAndGet();
+        this.versions.addAndGet(nrOfVersions);
+        this.avoidedRequests.addAndGet(avoidedRequests);
+    }
+
+    /**
+     * Rows inserted, or when upserting also updated or deleted, by a writer thread in the given time.
+     */
+    public void addWrittenRows(int rows, long nanos) {
+        writtenRows.addAndGet(rows);
+        writeNanos.addAndGet(nanos);
+    }
+
+    /**
+     * A dataset of which the versions could not be read or the loading failed. It is not registered as loaded, so a resumed run retries it.
+     */
+    public void addFailedDataset(String doi) {
+        failedDatasets.incrementAndGet();
+        log.error("No versions loaded for {}", doi);
+    }
+
+    /**
+     * A dataset that was read but could not be written, not even on its own. It is not registered as loaded either.
+     */
+    public void addUnwrittenDataset(String doi) {
+        unwrittenDatasets.incrementAndGet();
+        log.error("Could not write the actual rows of {}", doi);
+    }
+
+    /**
+     * A DOI that the search returned before.
+     */
+    public void addSkippedDuplicate(String doi) {
+        skippedDuplicates.incrementAndGet();
+        log.debug("Skipping duplicate search result {}", doi);
+    }
+
+    public long getDatasets() {
+        return datasets.get();
+    }
+
+    public long getVersions() {
+        return versions.get();
+    }
+
+    public long getAvoidedRequests() {
+        return avoidedRequests.get();
+    }
+
+    public long getFailedDatasets() {
+        return failedDatasets.get();
+    }
+
+    public long getUnwrittenDatasets() {
+        return unwrittenDatasets.get();
+    }
+
+    public long getWrittenRows() {
+        return writtenRows.get();
+    }
+
+    /**
+     * @return rows inserted per second of write time, summed over the writer threads
+     */
+    public long getWriteThroughput() {
+        long millis = TimeUnit.NANOSECONDS.toMillis(writeNanos.get());
+        return millis == 0 ? 0 : writtenRows.get() * 1000 / millis;
+    }
+
+    public long getSkippedDuplicates() {
+        return skippedDuplicates.get();
+    }
+
+    public void setRateLimiter(AdaptiveLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public void setUserCacheStats(Supplier<CacheStats> userCacheStats) {
+        this.userCacheStats = userCacheStats;
+    }
+
+    public void log() {
+        log.info("Loaded {} datasets with {} versions, failed to read {} and to write {} datasets",
+            datasets.get(), versions.get(), failedDatasets.get(), unwrittenDatasets.get());
+        log.info("Wrote {} actual rows in {} ms of write time, {} rows per second per writer thread",
+            writtenRows.get(), TimeUnit.NANOSECONDS.toMillis(writeNanos.get()), getWriteThroughput());
+        log.info("Skipped {} duplicate search results", skippedDuplicates.get());
+        log.info("Avoided {} dataset level requests by reusing them for all versions", avoidedRequests.get());
+        CacheStats stats = userCacheStats.get();
+        log.info("User cache: {} hits, {} misses, {} evictions", stats.hitCount(), stats.missCount(), stats.evictionCount());
+        if (rateLimiter != null)
+            log.info("Dataverse requests: limit {}, throttled {}, retried {}, given up {}",
+                rateLimiter.getLimit(), rateLimiter.getThrottled(), rateLimiter.getRetries(), rateLimiter.getFailures());
+    }
+}
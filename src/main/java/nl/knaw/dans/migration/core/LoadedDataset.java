@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import nl.knaw.dans.migration.core.tables.ActualDataset;
+import nl.knaw.dans.migration.core.tables.ActualFile;
+
+import java.util.List;
+
+/**
+ * The actual rows of a dataset, fetched from Dataverse and not yet written.
+ */
+public class LoadedDataset {
+    private final String doi;
+    private final List<ActualDataset> datasets;
+    private final List<ActualFile> files;
+    private final int nrOfVersions;
+    private final int avoidedRequests;
+
+    public LoadedDataset(String doi, List<ActualDataset> datasets, List<ActualFile> files, int nrOfVersions, int avoidedRequests) {
+        this.doi = doi;
+        this.datasets = datasets;
+        this.files = files;
+        this.nrOfVersions = nrOfVersions;
+        this.avoidedRequests = avoidedRequests;
+    }
+
+    /**
+     * @return the DOI as requested from Dataverse, with the prefix "doi:"
+     */
+    public String getDoi() {
+        return doi;
+    }
+
+    public List<ActualDataset> getDatasets() {
+        return datasets;
+    }
+
+    public List<ActualFile> getFiles() {
+        return files;
+    }
+
+    public int getNrOfVersions() {
+        return nrOfVersions;
+    }
+
+    public int getAvoidedRequests() {
+        return avoidedRequests;
+    }
+
+    public int getNrOfRows() {
+        return datasets.size() + files.size();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Iterates over paged results while a background thread fetches the next pages.
+ * At most readAhead pages wait in memory, the fetcher blocks when the consumer falls behind.
+ * Pages are requested by offset, or with keyset pagination by the last item of the previous page.
+ * By offset, the last page is empty or reaches the reported total: a search can return short pages before the end.
+ * By keyset, a page shorter than the page size is the last one.
+ */
+public class PrefetchingIterator<T> implements Iterator<T>, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(PrefetchingIterator.class);
+
+    public interface PageFetcher<T> {
+        Results<T> fetch(int start) throws Exception;
+    }
+
+    /**
+     * The items of a page by offset and the total number of items at the time, -1 if unknown.
+     */
+    public static final class Results<T> {
+        private final List<T> items;
+        private final int total;
+
+        public Results(List<T> items, int total) {
+            this.items = items;
+            this.total = total;
+        }
+    }
+
+    public interface KeysetFetcher<T> {
+        /**
+         * @param last the last item of the previous page, null for the first page
+         */
+        List<T> fetch(T last) throws Exception;
+    }
+
+    private static class Page<T> {
+        private final List<T> items;
+        private final Exception error;
+        private final boolean last;
+
+        private Page(List<T> items, Exception error, boolean last) {
+            this.items = items;
+            this.error = error;
+            this.last = last;
+        }
+    }
+
+    private final BlockingQueue<Page<T>> pages;
+    private final Thread fetcher;
+    private final KeysetFetcher<T> keysetFetcher;
+    private final PageFetcher<T> pageFetcher;
+    private final int pageSize;
+    private Iterator<T> current = Collections.emptyIterator();
+    private boolean exhausted = false;
+
+    public PrefetchingIterator(PageFetcher<T> pageFetcher, int readAhead) {
+        this(null, pageFetcher, 0, readAhead, "search-prefetch");
+    }
+
+    public PrefetchingIterator(KeysetFetcher<T> keysetFetcher, int pageSize, int readAhead, String threadName) {
+        this(keysetFetcher, null, pageSize, readAhead, threadName);
+    }
+
+    private PrefetchingIterator(KeysetFetcher<T> keysetFetcher, PageFetcher<T> pageFetcher, int pageSize, int readAhead, String threadName) {
+        this.keysetFetcher = keysetFetcher;
+        this.pageFetcher = pageFetcher;
+        this.pageSize = pageSize;
+        this.pages = new ArrayBlockingQueue<>(Math.max(1, readAhead));
+        this.fetcher = new Thread(this::fetchAll, threadName);
+        fetcher.setDaemon(true);
+        fetcher.start();
+    }
+
+    private void fetchAll() {
+        int start = 0;
+        T last = null;
+        try {
+            while (true) {
+                Page<T> page;
+                try {
+                    List<T> items;
+                    boolean lastPage;
+                    if (keysetFetcher == null) {
+                        Results<T> results = pageFetcher.fetch(start);
+                        items = results.items;
+                        lastPage = items.isEmpty() || results.total >= 0 && start + items.size() >= results.total;
+                    }
+                    else {
+                        items = keysetFetcher.fetch(last);
+                        lastPage = items.size() < pageSize;
+                    }
+                    start += items.size();
+                    if (!items.isEmpty())
+                        last = items.get(items.size() - 1);
+                    page = new Page<>(items, null, lastPage);
+                    log.trace("fetched {} results, {} so far", items.size(), start);
+                }
+                catch (InterruptedException e) {
+                    throw e;
+                }
+                catch (Exception e) {
+                    page = new Page<>(Collections.emptyList(), e, true);
+                }
+                pages.put(page);
+                if (page.last)
+                    return;
+            }
+        }
+        catch (InterruptedException e) {
+            // closed by the consumer
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext() && !exhausted) {
+            Page<T> page;
+            try {
+                page = pages.take();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the next page", e);
+            }
+            exhausted = page.last;
+            if (page.error != null)
+                throw new IllegalStateException("Could not fetch the next page: " + page.error.getMessage(), page.error);
+            current = page.items.iterator();
+        }
+        return current.hasNext();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return current.next();
+    }
+
+    /**
+     * Stops fetching pages that will not be consumed.
+     */
+    @Override
+    public void close() {
+        fetcher.interrupt();
+    }
+}
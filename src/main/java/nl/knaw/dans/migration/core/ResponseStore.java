@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import nl.knaw.dans.lib.dataverse.model.dataset.DatasetVersion;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the data of Dataverse responses as gzipped JSON files, one directory per endpoint, one file per DOI or user id.
+ * Without a directory, responses are neither stored nor replayed.
+ */
+public class ResponseStore {
+    private static final Logger log = LoggerFactory.getLogger(ResponseStore.class);
+    private static final String SUFFIX = ".json.gz";
+
+    @Nullable
+    private final Path directory;
+    private final ObjectMapper mapper;
+    private final boolean replay;
+
+    /**
+     * The loader does not use metadata blocks, leaving them out keeps the store small
+     * and avoids the polymorphic metadata fields when reading the store.
+     */
+    @JsonIgnoreProperties({ "metadataBlocks" })
+    private static abstract class StoredDatasetVersion {}
+
+    /**
+     * @param directory null for a store that only passes requests on to Dataverse
+     * @param mapper    copied, the configuration of the original is not changed
+     * @param replay    true: only read from the store, never from Dataverse
+     */
+    public ResponseStore(@Nullable Path directory, ObjectMapper mapper, boolean replay) {
+        if (replay && directory == null)
+            throw new IllegalArgumentException("replay requires a configured responseStore");
+        this.directory = directory;
+        this.mapper = mapper.copy().addMixIn(DatasetVersion.class, StoredDatasetVersion.class);
+        this.replay = replay;
+    }
+
+    public boolean isReplay() {
+        return replay;
+    }
+
+    public JavaType type(Class<?> clazz) {
+        return mapper.getTypeFactory().constructType(clazz);
+    }
+
+    public JavaType listType(Class<?> clazz) {
+        return mapper.getTypeFactory().constructCollectionType(List.class, clazz);
+    }
+
+    /**
+     * @param endpoint name of the directory for the responses of the remote loader
+     * @param type     the type of the data in a response
+     * @param remote   fetches the data of a response from Dataverse
+     * @return a loader that writes through to the store or, in replay mode, only reads from it
+     */
+    public <T> CacheLoader<String, T> through(String endpoint, JavaType type, CacheLoader<String, T> remote) {
+        if (directory == null)
+            return remote;
+        return id -> {
+            Path file = file(endpoint, id);
+            if (replay)
+                return read(file, type, endpoint, id);
+            T data = remote.load(id);
+            if (data != null)
+                write(file, data);
+            return data;
+        };
+    }
+
+    /**
+     * @return the ids with a stored response of the endpoint, empty without a store
+     */
+    public Iterator<String> storedIds(String endpoint) throws IOException {
+        if (directory == null || !Files.isDirectory(directory.resolve(endpoint)))
+            return Stream.<String> empty().iterator();
+        // sorting reads all names anyway, collecting them lets the directory stream close
+        try (Stream<Path> files = Files.list(directory.resolve(endpoint))) {
+            return files
+                .map(p -> p.getFileName().toString())
+                .filter(name -> name.endsWith(SUFFIX))
+                .sorted()
+                .map(name -> decode(name.substring(0, name.length() - SUFFIX.length())))
+                .collect(Collectors.toList())
+                .iterator();
+        }
+    }
+
+    private <T> T read(Path file, JavaType type, String endpoint, String id) throws IOException {
+        if (!Files.exists(file))
+            throw new FileNotFoundException(endpoint + "(" + id + ") not found in response store " + directory);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            return mapper.readValue(in, type);
+        }
+    }
+
+    private void write(Path file, Object data) throws IOException {
+        Files.createDirectories(file.getParent());
+        // concurrent readers never see a half written file
+        Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+            mapper.writeValue(out, data);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.trace("stored {}", file);
+    }
+
+    private Path file(String endpoint, String id) {
+        return directory.resolve(endpoint).resolve(encode(id) + SUFFIX);
+    }
+
+    private static String encode(String id) {
+        try {
+            return URLEncoder.encode(id, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String name) {
+        try {
+            return URLDecoder.decode(name, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import io.dropwizard.hibernate.UnitOfWork;
+import nl.knaw.dans.migration.config.ActualWriterConfig.Layout;
+import nl.knaw.dans.migration.config.SchemaConfig;
+import nl.knaw.dans.migration.db.ActualFileRangeDAO;
+import nl.knaw.dans.migration.db.ChecksumColumnsDAO;
+import nl.knaw.dans.migration.db.NormalisedFilesDAO;
+import nl.knaw.dans.migration.db.SchemaDAO;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Prepares the verification database before a command uses it, instead of letting hibernate update the schema.
+ */
+public class SchemaManager {
+    private final SchemaDAO schemaDAO;
+    private final ChecksumColumnsDAO checksumColumnsDAO;
+    private final ActualFileRangeDAO actualFileRangeDAO;
+    private final NormalisedFilesDAO normalisedFilesDAO;
+    private final int partitions;
+    private final Layout layout;
+
+    public SchemaManager(SchemaDAO schemaDAO, ChecksumColumnsDAO checksumColumnsDAO, ActualFileRangeDAO actualFileRangeDAO,
+        NormalisedFilesDAO normalisedFilesDAO, SchemaConfig config, Layout layout) {
+        this.schemaDAO = schemaDAO;
+        this.checksumColumnsDAO = checksumColumnsDAO;
+        this.actualFileRangeDAO = actualFileRangeDAO;
+        this.normalisedFilesDAO = normalisedFilesDAO;
+        this.partitions = config.getPartitions();
+        this.layout = layout;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Creates the missing tables, converts checksum columns of an older schema to binary and (re)creates the views.
+     * In the layouts other than PER_VERSION actual_files is the view of the layout, so existing queries keep working.
+     */
+    @UnitOfWork("hibernate")
+    public void prepare() {
+        checksumColumnsDAO.dropHexViews();
+        schemaDAO.create(partitions, layout == Layout.PER_VERSION);
+        checksumColumnsDAO.migrate();
+        if (layout == Layout.VERSION_RANGES)
+            actualFileRangeDAO.createView();
+        else if (layout == Layout.NORMALISED)
+            normalisedFilesDAO.createView();
+        checksumColumnsDAO.createHexViews();
+    }
+
+    /**
+     * Empties a partition of actual_files, much faster than deleting its rows.
+     * The ACTUAL fingerprints of the partition go too: a DOI that the reload does not find must not keep one.
+     */
+    @UnitOfWork("hibernate")
+    public void truncateActualFiles(int partition) {
+        schemaDAO.truncatePartition("actual_files", partition);
+        schemaDAO.deleteActualFingerprints("actual_files", partitions, partition);
+    }
+
+    /**
+     * @param dois with the prefix "doi:"
+     * @return the DOIs of which the actual files belong to the partition
+     */
+    @UnitOfWork("hibernate")
+    public List<String> inActualFilesPartition(Collection<String> dois, int partition) {
+        List<String> shortDois = dois.stream()
+            .map(doi -> doi.replace("doi:", ""))
+            .collect(Collectors.toList());
+        return schemaDAO.filterPartition("actual_files", partitions, partition, shortDois).stream()
+            .map(doi -> "doi:" + doi)
+            .collect(Collectors.toList());
+    }
+}
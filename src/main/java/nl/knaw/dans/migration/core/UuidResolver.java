@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Finds the datasets of bag ids with one search per batch of UUIDs, the bag ids of the hits tell which UUIDs were not found.
+ * The DOIs of a batch are handed over before the next batch is searched.
+ */
+public class UuidResolver {
+    private static final Logger log = LoggerFactory.getLogger(UuidResolver.class);
+    private static final Pattern uuidPattern = Pattern.compile("[0-9a-fA-F]{8}(-[0-9a-fA-F]{4}){3}-[0-9a-fA-F]{12}");
+
+    public interface BatchHandler {
+        void accept(List<String> dois) throws InterruptedException;
+    }
+
+    private final DatasetSearch search;
+    private final int batchSize;
+
+    public UuidResolver(DatasetSearch search, int batchSize) {
+        this.search = search;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param uuids bag ids, blank lines are ignored
+     * @param handler receives the DOIs per batch, each DOI once
+     * @return the UUIDs without a dataset
+     */
+    public List<String> resolve(Iterator<String> uuids, BatchHandler handler) throws Exception {
+        List<String> unresolved = new ArrayList<>();
+        DoiSeenSet seen = new DoiSeenSet(1024);
+        List<String> batch = new ArrayList<>(batchSize);
+        while (uuids.hasNext()) {
+            String uuid = uuids.next().trim();
+            if (uuid.isEmpty())
+                continue;
+            if (!uuidPattern.matcher(uuid).matches()) {
+                log.warn("Not a UUID: {}", uuid);
+                unresolved.add(uuid);
+                continue;
+            }
+            batch.add(uuid);
+            if (batch.size() == batchSize) {
+                resolveBatch(batch, seen, handler, unresolved);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty())
+            resolveBatch(batch, seen, handler, unresolved);
+        return unresolved;
+    }
+
+    private void resolveBatch(List<String> batch, DoiSeenSet seen, BatchHandler handler, List<String> unresolved) throws Exception {
+        Map<String, Set<String>> hits = find(batch);
+        Set<String> dois = hits.keySet();
+        List<String> unmatched = unmatched(batch, hits.values());
+        if (unmatched.size() == batch.size())
+            // no bag ids returned, so nothing tells which UUIDs were found
+            findUnresolved(batch, dois, unresolved);
+        else if (!unmatched.isEmpty())
+            findUnresolved(unmatched, find(unmatched).keySet(), unresolved);
+        log.debug("Resolved batch of {} UUIDs to {} DOIs", batch.size(), dois.size());
+        List<String> newDois = dois.stream()
+            .filter(seen::add)
+            .collect(Collectors.toList());
+        if (!newDois.isEmpty())
+            handler.accept(newDois);
+    }
+
+    /**
+     * @param bagIds of the search hits, "urn:uuid:" followed by the UUID
+     * @return the UUIDs that are not among the bag ids
+     */
+    static List<String> unmatched(List<String> uuids, Collection<Set<String>> bagIds) {
+        Set<String> found = bagIds.stream()
+            .flatMap(Set::stream)
+            .map(bagId -> bagId.replace("urn:uuid:", "").toLowerCase())
+            .collect(Collectors.toSet());
+        return uuids.stream()
+            .filter(uuid -> !found.contains(uuid.toLowerCase()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Bisects the UUIDs until each part is explained: all found, none found or a single UUID.
+     * Only needed for UUIDs that the bag ids of the hits do not explain,
+     * a few of those cost a few searches per halving, not a search per UUID.
+     *
+     * @param dois the DOIs found for the UUIDs
+     */
+    private void findUnresolved(List<String> uuids, Set<String> dois, List<String> unresolved) throws Exception {
+        // a bag belongs to one dataset, but bags of different versions of a dataset share the DOI
+        if (dois.size() >= uuids.size())
+            return;
+        if (dois.isEmpty()) {
+            unresolved.addAll(uuids);
+            return;
+        }
+        if (uuids.size() == 1)
+            return;
+        List<String> first = uuids.subList(0, uuids.size() / 2);
+        List<String> second = uuids.subList(uuids.size() / 2, uuids.size());
+        findUnresolved(first, find(first).keySet(), unresolved);
+        findUnresolved(second, find(second).keySet(), unresolved);
+    }
+
+    /**
+     * @return the bag ids per DOI of the datasets of the UUIDs
+     */
+    private Map<String, Set<String>> find(List<String> batch) throws Exception {
+        String query = batch.stream()
+            .map(uuid -> "\"urn:uuid:" + uuid + "\"")
+            .collect(Collectors.joining(" OR ", "dansBagId:(", ")"));
+        return search.findBagIds(query);
+    }
+}
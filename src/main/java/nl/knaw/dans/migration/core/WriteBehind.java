@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import nl.knaw.dans.migration.config.CommitPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * Writer threads take the fetched datasets from a bounded queue and write them in batches, one transaction per batch.
+ * The commit policy decides the size of a batch. The fetchers block when the queue is full. A batch that fails is retried once, then written dataset by dataset,
+ * so a single bad dataset does not take the others with it.
+ */
+public class WriteBehind implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehind.class);
+
+    public interface BatchWriter {
+        /**
+         * @return the number of written rows
+         */
+        int write(List<LoadedDataset> batch);
+    }
+
+    private final BlockingQueue<LoadedDataset> queue;
+    private final List<Thread> writers = new ArrayList<>();
+    private final BatchWriter batchWriter;
+    private final CommitPolicy commitPolicy;
+    private final LoadSummary summary;
+    private volatile boolean closing = false;
+    // a caller of awaitIdle does not want the writers to wait for a full batch
+    private volatile boolean flushing = false;
+    // put but not yet written, guarded by this
+    private int pending = 0;
+
+    public WriteBehind(int threads, int queueCapacity, CommitPolicy commitPolicy, BatchWriter batchWriter, LoadSummary summary) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchWriter = batchWriter;
+        this.commitPolicy = commitPolicy;
+        this.summary = summary;
+        for (int i = 1; i <= threads; i++) {
+            Thread writer = new Thread(this::work, "writer-" + i);
+            writers.add(writer);
+            writer.start();
+        }
+    }
+
+    public void put(LoadedDataset dataset) {
+        synchronized (this) {
+            pending++;
+        }
+        try {
+            queue.put(dataset);
+        }
+        catch (InterruptedException e) {
+            done(1);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the writers", e);
+        }
+    }
+
+    /**
+     * Waits until the datasets put so far are written.
+     */
+    public synchronized void awaitIdle() throws InterruptedException {
+        flushing = true;
+        try {
+            while (pending > 0)
+                wait();
+        }
+        finally {
+            flushing = false;
+        }
+    }
+
+    private synchronized void done(int n) {
+        pending -= n;
+        if (pending == 0)
+            notifyAll();
+    }
+
+    private void work() {
+        LoadedDataset carried = null;
+        while (true) {
+            LoadedDataset first = carried;
+            carried = null;
+            if (first == null) {
+                try {
+                    first = queue.poll(100, TimeUnit.MILLISECONDS);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (first == null) {
+                    if (closing)
+                        return;
+                    continue;
+                }
+            }
+            List<LoadedDataset> batch = new ArrayList<>();
+            batch.add(first);
+            try {
+                carried = fill(batch);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                closing = true;
+            }
+            try {
+                writeOrSplit(batch);
+            }
+            finally {
+                done(batch.size());
+            }
+        }
+    }
+
+    /**
+     * Adds datasets from the queue until the commit policy says the batch is complete or its interval has passed.
+     *
+     * @return a dataset that did not fit in the batch, or null
+     */
+    private LoadedDataset fill(List<LoadedDataset> batch) throws InterruptedException {
+        long rows = batch.get(0).getNrOfRows();
+        long deadline = System.nanoTime() + commitPolicy.getInterval().toNanoseconds();
+        while (!commitPolicy.isComplete(batch.size(), rows)) {
+            long wait = deadline - System.nanoTime();
+            if (wait <= 0)
+                return null;
+            LoadedDataset next = queue.poll(Math.min(wait, TimeUnit.MILLISECONDS.toNanos(100)), TimeUnit.NANOSECONDS);
+            if (next == null) {
+                if (closing || flushing)
+                    return null;
+                continue;
+            }
+            if (!commitPolicy.fits(rows, next.getNrOfRows()))
+                return next;
+            batch.add(next);
+            rows += next.getNrOfRows();
+        }
+        return null;
+    }
+
+    private void writeOrSplit(List<LoadedDataset> batch) {
+        if (tryWrite(batch) || tryWrite(batch))
+            return;
+        if (batch.size() == 1) {
+            summary.addUnwrittenDataset(batch.get(0).getDoi());
+            return;
+        }
+        log.warn("Writing {} datasets one by one", batch.size());
+        for (LoadedDataset dataset : batch)
+            if (!tryWrite(singletonList(dataset)))
+                summary.addUnwrittenDataset(dataset.getDoi());
+    }
+
+    private boolean tryWrite(List<LoadedDataset> batch) {
+        long start = System.nanoTime();
+        try {
+            int rows = batchWriter.write(batch);
+            summary.addWrittenRows(rows, System.nanoTime() - start);
+            for (LoadedDataset dataset : batch)
+                summary.addDataset(dataset.getNrOfVersions(), dataset.getAvoidedRequests());
+            return true;
+        }
+        catch (RuntimeException e) {
+            log.warn("Could not write {} datasets starting with {}: {}", batch.size(), batch.get(0).getDoi(), e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Waits until all datasets are written. Call it after the last put.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closing = true;
+        for (Thread writer : writers)
+            writer.join();
+    }
+}
@@ -164,7 +164,8 @@ public class ActualDataset {
     if (o == null || getClass() != o.getClass())
       return false;
     ActualDataset that = (ActualDataset) o;
-    return majorVersionNr == that.majorVersionNr && minorVersionNr == that.minorVersionNr && fileAccessRequest == that.fileAccessRequest && deaccessioned == that.deaccessioned
+    return Objects.equals(majorVersionNr, that.majorVersionNr) && Objects.equals(minorVersionNr, that.minorVersionNr)
+        && Objects.equals(fileAccessRequest, that.fileAccessRequest) && Objects.equals(deaccessioned, that.deaccessioned)
         && Objects.equals(doi, that.doi) && Objects.equals(licenseName, that.licenseName) && Objects.equals(licenseUri, that.licenseUri) && Objects.equals(
         depositor, that.depositor) && Objects.equals(citationYear, that.citationYear);
   }
@@ -23,6 +23,15 @@ public class ActualDatasetKey implements Serializable {
   private int majorVersionNr;
   private int minorVersionNr;
 
+  public ActualDatasetKey() {
+  }
+
+  public ActualDatasetKey(ActualDataset dataset) {
+    this.doi = dataset.getDoi();
+    this.majorVersionNr = dataset.getMajorVersionNr();
+    this.minorVersionNr = dataset.getMinorVersionNr();
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -20,6 +20,7 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import org.joda.time.DateTime;
 
 import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.IdClass;
@@ -60,7 +61,8 @@ public class ActualFile {
   @Column(name="minor_version_nr")
   private int minorVersionNr;
 
-  @Column(name="sha1_checksum",length = 40)
+  @Convert(converter = Sha1Converter.class)
+  @Column(name="sha1_checksum", length = 20)
   private String sha1Checksum = "";
 
   @Column(name="storage_id",length = 60)
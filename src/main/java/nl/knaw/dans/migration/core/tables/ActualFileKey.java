@@ -24,6 +24,16 @@ public class ActualFileKey implements Serializable {
   private int majorVersionNr;
   private int minorVersionNr;
 
+  public ActualFileKey() {
+  }
+
+  public ActualFileKey(ActualFile file) {
+    this.doi = file.getDoi();
+    this.actualPath = file.getActualPath();
+    this.majorVersionNr = file.getMajorVersionNr();
+    this.minorVersionNr = file.getMinorVersionNr();
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core.tables;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.util.Objects;
+
+/**
+ * An {@link ActualFile} that did not change from its first through its last version,
+ * stored once instead of once per version.
+ */
+@Entity
+@IdClass(ActualFileRangeKey.class)
+@Table(name = "actual_file_ranges",
+       indexes = {
+           @Index(name = "afr_doi_index", columnList = "doi")
+       }
+)
+public class ActualFileRange {
+  // https://docs.jboss.org/hibernate/orm/5.6/userguide/html_single/Hibernate_User_Guide.html#schema-generation
+
+  public ActualFileRange() {}
+
+  /**
+   * @param file the first version of the range, also its last one until extended
+   */
+  public ActualFileRange(ActualFile file) {
+    this.doi = file.getDoi();
+    this.actualPath = file.getActualPath();
+    this.firstMajorVersionNr = file.getMajorVersionNr();
+    this.firstMinorVersionNr = file.getMinorVersionNr();
+    this.lastMajorVersionNr = file.getMajorVersionNr();
+    this.lastMinorVersionNr = file.getMinorVersionNr();
+    this.sha1Checksum = file.getSha1Checksum();
+    this.storageId = file.getStorageId();
+    this.accessibleTo = file.getAccessibleTo();
+    this.embargoDate = file.getEmbargoDate();
+  }
+
+  // lengths as in ActualFile
+
+  @Id
+  @Column(length = 255)
+  private String doi;
+
+  @Id
+  @Column(name = "actual_path", length = 1024)
+  private String actualPath;
+
+  @Id
+  @Column(name = "first_major_version_nr")
+  private int firstMajorVersionNr;
+
+  @Id
+  @Column(name = "first_minor_version_nr")
+  private int firstMinorVersionNr;
+
+  @Column(name = "last_major_version_nr")
+  private int lastMajorVersionNr;
+
+  @Column(name = "last_minor_version_nr")
+  private int lastMinorVersionNr;
+
+  @Convert(converter = Sha1Converter.class)
+  @Column(name = "sha1_checksum", length = 20)
+  private String sha1Checksum = "";
+
+  @Column(name = "storage_id", length = 60)
+  private String storageId = "";
+
+  @Column(name = "accessible_to")
+  private String accessibleTo;
+
+  @Nullable
+  @Column(name = "embargo_date")
+  private String embargoDate;
+
+  /**
+   * @return true if the file has the columns of this range, apart from its version
+   */
+  public boolean hasContentOf(ActualFile file) {
+    return Objects.equals(actualPath, file.getActualPath()) && Objects.equals(sha1Checksum, file.getSha1Checksum())
+        && Objects.equals(storageId, file.getStorageId()) && Objects.equals(accessibleTo, file.getAccessibleTo())
+        && Objects.equals(embargoDate, file.getEmbargoDate());
+  }
+
+  public void extendTo(int majorVersionNr, int minorVersionNr) {
+    this.lastMajorVersionNr = majorVersionNr;
+    this.lastMinorVersionNr = minorVersionNr;
+  }
+
+  public String getDoi() {
+    return doi;
+  }
+
+  public String getActualPath() {
+    return actualPath;
+  }
+
+  public int getFirstMajorVersionNr() {
+    return firstMajorVersionNr;
+  }
+
+  public int getFirstMinorVersionNr() {
+    return firstMinorVersionNr;
+  }
+
+  public int getLastMajorVersionNr() {
+    return lastMajorVersionNr;
+  }
+
+  public int getLastMinorVersionNr() {
+    return lastMinorVersionNr;
+  }
+
+  public String getSha1Checksum() {
+    return sha1Checksum;
+  }
+
+  public String getStorageId() {
+    return storageId;
+  }
+
+  public String getAccessibleTo() {
+    return accessibleTo;
+  }
+
+  @Nullable
+  public String getEmbargoDate() {
+    return embargoDate;
+  }
+
+  @Override
+  public String toString() {
+    return "ActualFileRange{" +
+        "doi='" + doi + '\'' +
+        ", actualPath='" + actualPath + '\'' +
+        ", first=" + firstMajorVersionNr + "." + firstMinorVersionNr +
+        ", last=" + lastMajorVersionNr + "." + lastMinorVersionNr +
+        ", sha1Checksum='" + sha1Checksum + '\'' +
+        ", storageId='" + storageId + '\'' +
+        ", accessibleTo='" + accessibleTo + '\'' +
+        ", embargoDate='" + embargoDate + '\'' +
+        '}';
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    ActualFileRange that = (ActualFileRange) o;
+    return firstMajorVersionNr == that.firstMajorVersionNr && firstMinorVersionNr == that.firstMinorVersionNr
+        && lastMajorVersionNr == that.lastMajorVersionNr && lastMinorVersionNr == that.lastMinorVersionNr
+        && Objects.equals(doi, that.doi) && sameContent(that);
+  }
+
+  private boolean sameContent(ActualFileRange that) {
+    return Objects.equals(actualPath, that.actualPath) && Objects.equals(sha1Checksum, that.sha1Checksum)
+        && Objects.equals(storageId, that.storageId) && Objects.equals(accessibleTo, that.accessibleTo)
+        && Objects.equals(embargoDate, that.embargoDate);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(doi, actualPath, firstMajorVersionNr, firstMinorVersionNr, lastMajorVersionNr, lastMinorVersionNr, sha1Checksum, storageId,
+        accessibleTo, embargoDate);
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core.tables;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+import java.util.Objects;
+
+/**
+ * An {@link ActualFile} in the NORMALISED layout: the DOI and path are integer ids
+ * of {@link DatasetRef} and {@link DatasetPath}.
+ */
+@Entity
+@IdClass(ActualFileRefKey.class)
+@Table(name = "actual_file_refs")
+public class ActualFileRef {
+  // https://docs.jboss.org/hibernate/orm/5.6/userguide/html_single/Hibernate_User_Guide.html#schema-generation
+
+  public ActualFileRef() {}
+
+  @Id
+  @Column(name = "dataset_id")
+  private int datasetId;
+
+  @Id
+  @Column(name = "path_id")
+  private int pathId;
+
+  @Id
+  @Column(name = "major_version_nr")
+  private int majorVersionNr;
+
+  @Id
+  @Column(name = "minor_version_nr")
+  private int minorVersionNr;
+
+  // lengths as in ActualFile
+
+  @Convert(converter = Sha1Converter.class)
+  @Column(name = "sha1_checksum", length = 20)
+  private String sha1Checksum = "";
+
+  @Column(name = "storage_id", length = 60)
+  private String storageId = "";
+
+  @Column(name = "accessible_to")
+  private String accessibleTo;
+
+  @Nullable
+  @Column(name = "embargo_date")
+  private String embargoDate;
+
+  public int getDatasetId() {
+    return datasetId;
+  }
+
+  public int getPathId() {
+    return pathId;
+  }
+
+  public int getMajorVersionNr() {
+    return majorVersionNr;
+  }
+
+  public int getMinorVersionNr() {
+    return minorVersionNr;
+  }
+
+  public String getSha1Checksum() {
+    return sha1Checksum;
+  }
+
+  public String getStorageId() {
+    return storageId;
+  }
+
+  public String getAccessibleTo() {
+    return accessibleTo;
+  }
+
+  @Nullable
+  public String getEmbargoDate() {
+    return embargoDate;
+  }
+
+  @Override
+  public String toString() {
+    return "ActualFileRef{" +
+        "datasetId=" + datasetId +
+        ", pathId=" + pathId +
+        ", majorVersionNr=" + majorVersionNr +
+        ", minorVersionNr=" + minorVersionNr +
+        ", sha1Checksum='" + sha1Checksum + '\'' +
+        ", storageId='" + storageId + '\'' +
+        ", accessibleTo='" + accessibleTo + '\'' +
+        ", embargoDate='" + embargoDate + '\'' +
+        '}';
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    ActualFileRef that = (ActualFileRef) o;
+    return datasetId == that.datasetId && pathId == that.pathId && majorVersionNr == that.majorVersionNr && minorVersionNr == that.minorVersionNr
+        && Objects.equals(sha1Checksum, that.sha1Checksum) && Objects.equals(storageId, that.storageId) && Objects.equals(accessibleTo, that.accessibleTo)
+        && Objects.equals(embargoDate, that.embargoDate);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(datasetId, pathId, majorVersionNr, minorVersionNr, sha1Checksum, storageId, accessibleTo, embargoDate);
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core.tables;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+import java.util.Objects;
+
+/**
+ * A dataset version with files, expands the {@link ActualFileRange}s into one row per version.
+ */
+@Entity
+@IdClass(ActualFileVersionKey.class)
+@Table(name = "actual_file_versions")
+public class ActualFileVersion {
+  // https://docs.jboss.org/hibernate/orm/5.6/userguide/html_single/Hibernate_User_Guide.html#schema-generation
+
+  public ActualFileVersion() {}
+
+  public ActualFileVersion(String doi, int majorVersionNr, int minorVersionNr) {
+    this.doi = doi;
+    this.majorVersionNr = majorVersionNr;
+    this.minorVersionNr = minorVersionNr;
+  }
+
+  @Id
+  @Column(length = 255)
+  private String doi;
+
+  @Id
+  @Column(name = "major_version_nr")
+  private int majorVersionNr;
+
+  @Id
+  @Column(name = "minor_version_nr")
+  private int minorVersionNr;
+
+  public String getDoi() {
+    return doi;
+  }
+
+  public int getMajorVersionNr() {
+    return majorVersionNr;
+  }
+
+  public int getMinorVersionNr() {
+    return minorVersionNr;
+  }
+
+  @Override
+  public String toString() {
+    return "ActualFileVersion{" +
+        "doi='" + doi + '\'' +
+        ", majorVersionNr=" + majorVersionNr +
+        ", minorVersionNr=" + minorVersionNr +
+        '}';
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    ActualFileVersion that = (ActualFileVersion) o;
+    return majorVersionNr == that.majorVersionNr && minorVersionNr == that.minorVersionNr && Objects.equals(doi, that.doi);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(doi, majorVersionNr, minorVersionNr);
+  }
+}
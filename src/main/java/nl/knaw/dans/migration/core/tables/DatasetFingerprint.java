@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core.tables;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+import java.util.Objects;
+
+/**
+ * An order-independent hash over the compared columns of the files of a dataset,
+ * for the expected files and for the latest version of the actual files.
+ * Datasets with equal fingerprints on both sides are not compared row by row.
+ */
+@Entity
+@IdClass(DatasetFingerprintKey.class)
+@Table(name = "dataset_fingerprints")
+public class DatasetFingerprint {
+  // https://docs.jboss.org/hibernate/orm/5.6/userguide/html_single/Hibernate_User_Guide.html#schema-generation
+
+  public enum Side {
+    EXPECTED,
+    ACTUAL
+  }
+
+  public DatasetFingerprint() {}
+
+  public DatasetFingerprint(String doi, Side side, int files, long fingerprint) {
+    this.doi = doi;
+    this.side = side;
+    this.files = files;
+    this.fingerprint = fingerprint;
+  }
+
+  @Id
+  @Column(length = 255)
+  private String doi;
+
+  @Id
+  @Enumerated(EnumType.STRING)
+  @Column(length = 16)
+  private Side side;
+
+  @Column(nullable = false)
+  private int files;
+
+  @Column(nullable = false)
+  private long fingerprint;
+
+  public String getDoi() {
+    return doi;
+  }
+
+  public Side getSide() {
+    return side;
+  }
+
+  public int getFiles() {
+    return files;
+  }
+
+  public long getFingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * @return whether the other side has the same files
+   */
+  public boolean matches(DatasetFingerprint other) {
+    return other != null && files == other.files && fingerprint == other.fingerprint;
+  }
+
+  @Override
+  public String toString() {
+    return "DatasetFingerprint{" +
+        "doi='" + doi + '\'' +
+        ", side=" + side +
+        ", files=" + files +
+        ", fingerprint=" + fingerprint +
+        '}';
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    DatasetFingerprint that = (DatasetFingerprint) o;
+    return files == that.files && fingerprint == that.fingerprint && Objects.equals(doi, that.doi) && side == that.side;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(doi, side, files, fingerprint);
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core.tables;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+public class DatasetFingerprintKey implements Serializable {
+  private String doi;
+  private DatasetFingerprint.Side side;
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    DatasetFingerprintKey that = (DatasetFingerprintKey) o;
+    return Objects.equals(doi, that.doi) && side == that.side;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(doi, side);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core.tables;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.util.Objects;
+
+/**
+ * The paths of a dataset, numbered per dataset, for the NORMALISED layout.
+ */
+@Entity
+@IdClass(DatasetPathKey.class)
+@Table(name = "dataset_paths",
+       indexes = {
+           @Index(name = "dp_path_index", columnList = "dataset_id, path", unique = true)
+       }
+)
+public class DatasetPath {
+  // https://docs.jboss.org/hibernate/orm/5.6/userguide/html_single/Hibernate_User_Guide.html#schema-generation
+
+  public DatasetPath() {}
+
+  @Id
+  @Column(name = "dataset_id")
+  private int datasetId;
+
+  @Id
+  @Column(name = "path_id")
+  private int pathId;
+
+  // as actual_path of ActualFile
+  @Column(length = 1024, nullable = false)
+  private String path;
+
+  public int getDatasetId() {
+    return datasetId;
+  }
+
+  public int getPathId() {
+    return pathId;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  @Override
+  public String toString() {
+    return "DatasetPath{" +
+        "datasetId=" + datasetId +
+        ", pathId=" + pathId +
+        ", path='" + path + '\'' +
+        '}';
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    DatasetPath that = (DatasetPath) o;
+    return datasetId == that.datasetId && pathId == that.pathId && Objects.equals(path, that.path);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(datasetId, pathId, path);
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core.tables;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.util.Objects;
+
+/**
+ * Dictionary of DOIs for the NORMALISED layout, rows refer to a dataset by its integer id.
+ */
+@Entity
+@Table(name = "datasets")
+public class DatasetRef {
+  // https://docs.jboss.org/hibernate/orm/5.6/userguide/html_single/Hibernate_User_Guide.html#schema-generation
+
+  public DatasetRef() {}
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private int id;
+
+  @Column(length = 255, unique = true, nullable = false)
+  private String doi;
+
+  public int getId() {
+    return id;
+  }
+
+  public String getDoi() {
+    return doi;
+  }
+
+  @Override
+  public String toString() {
+    return "DatasetRef{" +
+        "id=" + id +
+        ", doi='" + doi + '\'' +
+        '}';
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    DatasetRef that = (DatasetRef) o;
+    return id == that.id && Objects.equals(doi, that.doi);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(id, doi);
+  }
+}
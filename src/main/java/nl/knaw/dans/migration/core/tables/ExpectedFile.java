@@ -22,6 +22,7 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.IdClass;
@@ -124,7 +125,8 @@ public class ExpectedFile {
     @Column(name="removed_original_directory")
     private boolean removedOriginalDirectory;
 
-    @Column(name="sha1_checksum", length = 40)
+    @Convert(converter = Sha1Converter.class)
+    @Column(name="sha1_checksum", length = 20)
     private String sha1Checksum = "";
 
     /**
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core.tables;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.util.Objects;
+
+/**
+ * A difference between expected_files and the latest version in actual_files, found by the compare command.
+ */
+@Entity
+@Table(name = "file_differences")
+public class FileDifference {
+  // https://docs.jboss.org/hibernate/orm/5.6/userguide/html_single/Hibernate_User_Guide.html#schema-generation
+
+  public enum Category {
+    MISSING,
+    EXTRA,
+    CHECKSUM_MISMATCH,
+    ACCESSIBLE_TO_MISMATCH,
+    EMBARGO_MISMATCH
+  }
+
+  public FileDifference() {}
+
+  public FileDifference(String doi, String path, Category category, String expectedValue, String actualValue) {
+    this.doi = doi;
+    this.path = path;
+    this.category = category;
+    this.expectedValue = expectedValue;
+    this.actualValue = actualValue;
+  }
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private long id;
+
+  @Column(length = 255, nullable = false)
+  private String doi;
+
+  @Column(length = 1024, nullable = false)
+  private String path;
+
+  @Enumerated(EnumType.STRING)
+  @Column(length = 32, nullable = false)
+  private Category category;
+
+  @Column(name = "expected_value", length = 1024)
+  private String expectedValue;
+
+  @Column(name = "actual_value", length = 1024)
+  private String actualValue;
+
+  public long getId() {
+    return id;
+  }
+
+  public String getDoi() {
+    return doi;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public Category getCategory() {
+    return category;
+  }
+
+  public String getExpectedValue() {
+    return expectedValue;
+  }
+
+  public String getActualValue() {
+    return actualValue;
+  }
+
+  @Override
+  public String toString() {
+    return "FileDifference{" +
+        "doi='" + doi + '\'' +
+        ", path='" + path + '\'' +
+        ", category=" + category +
+        ", expectedValue='" + expectedValue + '\'' +
+        ", actualValue='" + actualValue + '\'' +
+        '}';
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    FileDifference that = (FileDifference) o;
+    return id == that.id && Objects.equals(doi, that.doi) && Objects.equals(path, that.path) && category == that.category
+        && Objects.equals(expectedValue, that.expectedValue) && Objects.equals(actualValue, that.actualValue);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(id, doi, path, category, expectedValue, actualValue);
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core.tables;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+import java.util.Objects;
+
+/**
+ * A dataset completely loaded by a load-from-dataverse run, written in the same transaction as its actual rows.
+ */
+@Entity
+@IdClass(LoadProgressKey.class)
+@Table(name = "load_progress")
+public class LoadProgress {
+  // https://docs.jboss.org/hibernate/orm/5.6/userguide/html_single/Hibernate_User_Guide.html#schema-generation
+
+  public LoadProgress() {}
+
+  public LoadProgress(String runId, String doi) {
+    this.runId = runId;
+    this.doi = doi;
+  }
+
+  @Id
+  @Column(name = "run_id", length = 64)
+  private String runId;
+
+  @Id
+  @Column(length = 255)
+  private String doi;
+
+  public String getRunId() {
+    return runId;
+  }
+
+  public void setRunId(String runId) {
+    this.runId = runId;
+  }
+
+  public String getDoi() {
+    return doi;
+  }
+
+  public void setDoi(String doi) {
+    this.doi = doi;
+  }
+
+  @Override
+  public String toString() {
+    return "LoadProgress{" +
+        "runId='" + runId + '\'' +
+        ", doi='" + doi + '\'' +
+        '}';
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    LoadProgress that = (LoadProgress) o;
+    return Objects.equals(runId, that.runId) && Objects.equals(doi, that.doi);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(runId, doi);
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core.tables;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A load-from-dataverse run that (re)loads all datasets or the datasets modified since some time.
+ */
+@Entity
+@Table(name = "load_runs")
+public class LoadRun {
+  // https://docs.jboss.org/hibernate/orm/5.6/userguide/html_single/Hibernate_User_Guide.html#schema-generation
+
+  public LoadRun() {}
+
+  public LoadRun(String runId, String kind, Instant startedAt) {
+    this.runId = runId;
+    this.kind = kind;
+    this.startedAt = startedAt;
+  }
+
+  @Id
+  @Column(name = "run_id", length = 64)
+  private String runId;
+
+  /**
+   * "all" or "since"
+   */
+  @Column(name = "kind", length = 16)
+  private String kind;
+
+  @Column(name = "started_at")
+  private Instant startedAt;
+
+  @Nullable
+  @Column(name = "finished_at")
+  private Instant finishedAt;
+
+  public String getRunId() {
+    return runId;
+  }
+
+  public void setRunId(String runId) {
+    this.runId = runId;
+  }
+
+  public String getKind() {
+    return kind;
+  }
+
+  public void setKind(String kind) {
+    this.kind = kind;
+  }
+
+  public Instant getStartedAt() {
+    return startedAt;
+  }
+
+  public void setStartedAt(Instant startedAt) {
+    this.startedAt = startedAt;
+  }
+
+  @Nullable
+  public Instant getFinishedAt() {
+    return finishedAt;
+  }
+
+  public void setFinishedAt(@Nullable Instant finishedAt) {
+    this.finishedAt = finishedAt;
+  }
+
+  @Override
+  public String toString() {
+    return "LoadRun{" +
+        "runId='" + runId + '\'' +
+        ", kind='" + kind + '\'' +
+        ", startedAt=" + startedAt +
+        ", finishedAt=" + finishedAt +
+        '}';
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    LoadRun that = (LoadRun) o;
+    return Objects.equals(runId, that.runId) && Objects.equals(kind, that.kind) && Objects.equals(startedAt, that.startedAt)
+        && Objects.equals(finishedAt, that.finishedAt);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(runId, kind, startedAt, finishedAt);
+  }
+}
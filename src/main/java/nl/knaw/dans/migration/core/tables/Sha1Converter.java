@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core.tables;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Checksums are hex strings in the entities and binary in the database: half the size and compared as fixed width bytes.
+ * An empty checksum is stored as null, so is an invalid one: a single bad value must not roll back a batch of rows.
+ */
+@Converter
+public class Sha1Converter implements AttributeConverter<String, byte[]> {
+  private static final Logger log = LoggerFactory.getLogger(Sha1Converter.class);
+
+  @Override
+  public byte[] convertToDatabaseColumn(String hex) {
+    return toBytes(hex);
+  }
+
+  @Override
+  public String convertToEntityAttribute(byte[] bytes) {
+    return toHex(bytes);
+  }
+
+  public static byte[] toBytes(String hex) {
+    if (StringUtils.isEmpty(hex))
+      return null;
+    if (hex.length() % 2 != 0)
+      return invalid(hex);
+    byte[] bytes = new byte[hex.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      int high = Character.digit(hex.charAt(2 * i), 16);
+      int low = Character.digit(hex.charAt(2 * i + 1), 16);
+      if (high < 0 || low < 0)
+        return invalid(hex);
+      bytes[i] = (byte) (high << 4 | low);
+    }
+    return bytes;
+  }
+
+  private static byte[] invalid(String hex) {
+    log.warn("Not a hex checksum, stored as null: {}", hex);
+    return null;
+  }
+
+  public static String toHex(byte[] bytes) {
+    if (bytes == null)
+      return "";
+    StringBuilder hex = new StringBuilder(2 * bytes.length);
+    for (byte b : bytes)
+      hex.append(Character.forDigit(b >> 4 & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    return hex.toString();
+  }
+}
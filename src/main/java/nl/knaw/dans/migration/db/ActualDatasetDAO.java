@@ -21,6 +21,10 @@ import org.hibernate.SessionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 public class ActualDatasetDAO extends AbstractDAO<ActualDatasetDAO> {
   private static final Logger log = LoggerFactory.getLogger(ActualDatasetDAO.class);
 
@@ -33,6 +37,26 @@ public class ActualDatasetDAO extends AbstractDAO<ActualDatasetDAO> {
     currentSession().save(actual);
   }
 
+  public void update(ActualDataset actual) {
+    log.trace("updating {}", actual);
+    currentSession().merge(actual);
+  }
+
+  public void delete(ActualDataset actual) {
+    log.trace("deleting {}", actual);
+    currentSession().delete(actual);
+  }
+
+  public List<ActualDataset> findByDois(Collection<String> dois) {
+    List<ActualDataset> found = new ArrayList<>();
+    for (List<String> chunk : BulkDeletes.chunks(dois))
+      found.addAll(currentSession()
+          .createQuery("FROM ActualDataset WHERE doi IN (:dois)", ActualDataset.class)
+          .setParameterList("dois", chunk)
+          .list());
+    return found;
+  }
+
   public void deleteByDoi(String doi) {
     log.trace("deleting ActualDataset {}", doi);
     int r = currentSession()
@@ -42,7 +66,25 @@ public class ActualDatasetDAO extends AbstractDAO<ActualDatasetDAO> {
     log.trace("deleted {} from ActualDataset", r);
   }
 
+  public void deleteByDois(Collection<String> dois) {
+    log.trace("deleting {} DOIs from ActualDataset", dois.size());
+    int r = 0;
+    for (List<String> chunk : BulkDeletes.chunks(dois))
+      r += currentSession()
+          .createQuery("DELETE FROM ActualDataset WHERE doi IN (:dois)")
+          .setParameterList("dois", chunk)
+          .executeUpdate();
+    log.trace("deleted {} from ActualDataset", r);
+  }
+
   public void deleteAll() {
+    if (BulkDeletes.canTruncate(currentSession())) {
+      log.trace("truncating actual_datasets");
+      currentSession()
+          .createNativeQuery("TRUNCATE TABLE actual_datasets")
+          .executeUpdate();
+      return;
+    }
     log.trace("deleting all from ActualDataset");
     int r = currentSession()
         .createQuery("DELETE FROM ActualDataset")
@@ -21,6 +21,10 @@ import org.hibernate.SessionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 public class ActualFileDAO extends AbstractDAO<ActualFileDAO> {
   private static final Logger log = LoggerFactory.getLogger(ActualFileDAO.class);
 
@@ -33,6 +37,26 @@ public class ActualFileDAO extends AbstractDAO<ActualFileDAO> {
     currentSession().save(actual);
   }
 
+  public void update(ActualFile actual) {
+    log.trace("updating {}", actual);
+    currentSession().merge(actual);
+  }
+
+  public void delete(ActualFile actual) {
+    log.trace("deleting {}", actual);
+    currentSession().delete(actual);
+  }
+
+  public List<ActualFile> findByDois(Collection<String> dois) {
+    List<ActualFile> found = new ArrayList<>();
+    for (List<String> chunk : BulkDeletes.chunks(dois))
+      found.addAll(currentSession()
+          .createQuery("FROM ActualFile WHERE doi IN (:dois)", ActualFile.class)
+          .setParameterList("dois", chunk)
+          .list());
+    return found;
+  }
+
   public void deleteByDoi(String doi) {
     log.trace("deleting ActualFile {}", doi);
     int r = currentSession()
@@ -42,7 +66,25 @@ public class ActualFileDAO extends AbstractDAO<ActualFileDAO> {
     log.trace("deleted {} from ActualFile", r);
   }
 
+  public void deleteByDois(Collection<String> dois) {
+    log.trace("deleting {} DOIs from ActualFile", dois.size());
+    int r = 0;
+    for (List<String> chunk : BulkDeletes.chunks(dois))
+      r += currentSession()
+          .createQuery("DELETE FROM ActualFile WHERE doi IN (:dois)")
+          .setParameterList("dois", chunk)
+          .executeUpdate();
+    log.trace("deleted {} from ActualFile", r);
+  }
+
   public void deleteAll() {
+    if (BulkDeletes.canTruncate(currentSession())) {
+      log.trace("truncating actual_files");
+      currentSession()
+          .createNativeQuery("TRUNCATE TABLE actual_files")
+          .executeUpdate();
+      return;
+    }
     log.trace("deleting all from ActualFile");
     int r = currentSession()
         .createQuery("DELETE FROM ActualFile")
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import io.dropwizard.hibernate.AbstractDAO;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The actual files in the VERSION_RANGES layout: the ranges and the versions they expand into.
+ */
+public class ActualFileRangeDAO extends AbstractDAO<ActualFileRangeDAO> {
+  private static final Logger log = LoggerFactory.getLogger(ActualFileRangeDAO.class);
+
+  /**
+   * The view of the previous releases, actual_files itself is the view now.
+   */
+  private static final String legacyView = "actual_files_expanded";
+
+  private static final String[] entities = { "ActualFileRange", "ActualFileVersion" };
+  private static final String[] tables = { "actual_file_ranges", "actual_file_versions" };
+
+  public ActualFileRangeDAO(SessionFactory sessionFactory) {
+    super(sessionFactory);
+  }
+
+  /**
+   * Creates actual_files as the ranges expanded into one row per version, SchemaDAO has dropped the table.
+   */
+  public void createView() {
+    log.trace("creating view {}", SchemaDAO.actualFiles);
+    currentSession().createNativeQuery("DROP VIEW IF EXISTS " + legacyView).executeUpdate();
+    currentSession().createNativeQuery("DROP VIEW IF EXISTS " + SchemaDAO.actualFiles).executeUpdate();
+    currentSession().createNativeQuery("CREATE VIEW " + SchemaDAO.actualFiles + " AS"
+            + " SELECT r.doi, r.actual_path, v.major_version_nr, v.minor_version_nr, r.sha1_checksum, r.storage_id, r.accessible_to, r.embargo_date"
+            + " FROM actual_file_ranges r JOIN actual_file_versions v ON v.doi = r.doi"
+            + " AND (v.major_version_nr, v.minor_version_nr) >= (r.first_major_version_nr, r.first_minor_version_nr)"
+            + " AND (v.major_version_nr, v.minor_version_nr) <= (r.last_major_version_nr, r.last_minor_version_nr)")
+        .executeUpdate();
+  }
+
+  public void deleteByDoi(String doi) {
+    for (String entity : entities) {
+      int r = currentSession()
+          .createQuery("DELETE FROM " + entity + " WHERE doi = :doi")
+          .setParameter("doi", doi)
+          .executeUpdate();
+      log.trace("deleted {} from {}", r, entity);
+    }
+  }
+
+  public void deleteByDois(Collection<String> dois) {
+    for (String entity : entities) {
+      int r = 0;
+      for (List<String> chunk : BulkDeletes.chunks(dois))
+        r += currentSession()
+            .createQuery("DELETE FROM " + entity + " WHERE doi IN (:dois)")
+            .setParameterList("dois", chunk)
+            .executeUpdate();
+      log.trace("deleted {} from {}", r, entity);
+    }
+  }
+
+  public void deleteAll() {
+    boolean truncate = BulkDeletes.canTruncate(currentSession());
+    for (int i = 0; i < tables.length; i++) {
+      int r = truncate
+          ? currentSession().createNativeQuery("TRUNCATE TABLE " + tables[i]).executeUpdate()
+          : currentSession().createQuery("DELETE FROM " + entities[i]).executeUpdate();
+      log.trace("deleted {} from {}", r, tables[i]);
+    }
+  }
+}
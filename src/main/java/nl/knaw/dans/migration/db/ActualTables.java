@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+/**
+ * The tables a writer inserts into: the tables read by the verification or the staging tables of a full load.
+ */
+public enum ActualTables {
+  LIVE(""),
+  STAGING("_staging");
+
+  private final String suffix;
+
+  ActualTables(String suffix) {
+    this.suffix = suffix;
+  }
+
+  /**
+   * @param liveName the name of a table, index or constraint of the live tables
+   * @return the corresponding name for these tables
+   */
+  public String name(String liveName) {
+    return liveName + suffix;
+  }
+
+  public String getFiles() {
+    return name("actual_files");
+  }
+
+  public String getDatasets() {
+    return name("actual_datasets");
+  }
+
+  public String getFingerprints() {
+    return name("dataset_fingerprints");
+  }
+}
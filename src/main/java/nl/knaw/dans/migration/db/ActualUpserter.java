@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import nl.knaw.dans.migration.core.tables.ActualDataset;
+import nl.knaw.dans.migration.core.tables.ActualDatasetKey;
+import nl.knaw.dans.migration.core.tables.ActualFile;
+import nl.knaw.dans.migration.core.tables.ActualFileKey;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Brings the actual rows of some DOIs up to date without touching the rows that did not change.
+ * Unlike delete and insert, unchanged rows keep their index entries and leave no dead tuples.
+ */
+public class ActualUpserter {
+  private static final Logger log = LoggerFactory.getLogger(ActualUpserter.class);
+
+  private final SessionFactory sessionFactory;
+  private final ActualFileDAO actualFileDAO;
+  private final ActualDatasetDAO actualDatasetDAO;
+  private final ActualWriter inserts;
+
+  /**
+   * @param inserts writes the rows with a new key
+   */
+  public ActualUpserter(SessionFactory sessionFactory, ActualWriter inserts) {
+    this.sessionFactory = sessionFactory;
+    this.actualFileDAO = new ActualFileDAO(sessionFactory);
+    this.actualDatasetDAO = new ActualDatasetDAO(sessionFactory);
+    this.inserts = inserts;
+  }
+
+  /**
+   * @param dois   without prefix, the DOIs of the datasets
+   * @param fresh  all versions of these DOIs
+   * @return the number of inserted, updated and deleted rows
+   */
+  public int upsertDatasets(Collection<String> dois, List<ActualDataset> fresh) {
+    RowDiff<ActualDatasetKey, ActualDataset> diff = new RowDiff<>(actualDatasetDAO.findByDois(dois), fresh, ActualDatasetKey::new);
+    diff.getDeletes().forEach(actualDatasetDAO::delete);
+    diff.getUpdates().forEach(actualDatasetDAO::update);
+    // the pending updates and deletes go first, the writers may bypass the session
+    sessionFactory.getCurrentSession().flush();
+    inserts.write(ActualTables.LIVE, diff.getInserts(), Collections.emptyList());
+    log(ActualDataset.class, diff);
+    return diff.getChanges();
+  }
+
+  /**
+   * @param dois   without prefix, the DOIs of the files
+   * @param fresh  the files of all versions of these DOIs
+   * @return the number of inserted, updated and deleted rows
+   */
+  public int upsertFiles(Collection<String> dois, List<ActualFile> fresh) {
+    RowDiff<ActualFileKey, ActualFile> diff = new RowDiff<>(actualFileDAO.findByDois(dois), fresh, ActualFileKey::new);
+    diff.getDeletes().forEach(actualFileDAO::delete);
+    diff.getUpdates().forEach(actualFileDAO::update);
+    sessionFactory.getCurrentSession().flush();
+    inserts.write(ActualTables.LIVE, Collections.emptyList(), diff.getInserts());
+    log(ActualFile.class, diff);
+    return diff.getChanges();
+  }
+
+  private static void log(Class<?> table, RowDiff<?, ?> diff) {
+    log.debug("{}: inserted {}, updated {}, deleted {}, unchanged {}", table.getSimpleName(),
+        diff.getInserts().size(), diff.getUpdates().size(), diff.getDeletes().size(), diff.getUnchanged());
+  }
+}
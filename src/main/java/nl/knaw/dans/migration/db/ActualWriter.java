@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import nl.knaw.dans.migration.core.tables.ActualDataset;
+import nl.knaw.dans.migration.core.tables.ActualFile;
+
+import java.util.List;
+
+/**
+ * Inserts actual rows within the current unit of work.
+ */
+public interface ActualWriter {
+
+  /**
+   * @param tables the live tables or the staging tables of a full load
+   * @return the number of inserted rows
+   */
+  int write(ActualTables tables, List<ActualDataset> datasets, List<ActualFile> files);
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.HSQLDialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+final class BulkDeletes {
+  // keeps the number of bind parameters per statement far below the limits of the databases
+  static final int chunkSize = 1000;
+
+  private BulkDeletes() {
+  }
+
+  static <T> List<List<T>> chunks(Collection<T> values) {
+    List<T> all = new ArrayList<>(values);
+    List<List<T>> chunks = new ArrayList<>();
+    for (int i = 0; i < all.size(); i += chunkSize)
+      chunks.add(all.subList(i, Math.min(all.size(), i + chunkSize)));
+    return chunks;
+  }
+
+  /**
+   * TRUNCATE does not visit the rows and leaves no dead tuples to vacuum.
+   */
+  static boolean canTruncate(Session session) {
+    Dialect dialect = ((SessionFactoryImplementor) session.getSessionFactory()).getJdbcServices().getDialect();
+    return dialect instanceof PostgreSQL81Dialect || dialect instanceof HSQLDialect;
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import io.dropwizard.hibernate.AbstractDAO;
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.Types;
+
+/**
+ * The sha1_checksum columns are binary. Hibernate does not change the type of existing columns,
+ * so hex columns of an older schema are converted here. Views with a hex checksum serve queries written for the old type.
+ */
+public class ChecksumColumnsDAO extends AbstractDAO<ChecksumColumnsDAO> {
+  private static final Logger log = LoggerFactory.getLogger(ChecksumColumnsDAO.class);
+
+  private static final String[] tables = { "actual_files", "expected_files", "actual_file_ranges", "actual_file_refs" };
+
+  static final String actualHexView = "actual_files_hex";
+  static final String expectedHexView = "expected_files_hex";
+
+  public ChecksumColumnsDAO(SessionFactory sessionFactory) {
+    super(sessionFactory);
+  }
+
+  /**
+   * Converts the hex checksum columns to binary, the hex views must not exist.
+   */
+  public void migrate() {
+    for (String table : tables) {
+      if (!isCharacterColumn(table))
+        continue;
+      log.info("Converting {}.sha1_checksum from hex to binary, empty and invalid checksums become null", table);
+      if (isPostgreSQL())
+        execute("ALTER TABLE " + table + " ALTER COLUMN sha1_checksum TYPE bytea"
+            + " USING CASE WHEN sha1_checksum ~ '^([0-9a-fA-F]{2})+$' THEN decode(sha1_checksum, 'hex') END");
+      else {
+        // the conversion would fail on invalid hex and turn '' into an empty binary
+        execute("UPDATE " + table + " SET sha1_checksum = NULL WHERE NOT REGEXP_MATCHES(sha1_checksum, '([0-9a-fA-F]{2})+')");
+        execute("ALTER TABLE " + table + " ALTER COLUMN sha1_checksum SET DATA TYPE VARBINARY(20)");
+      }
+    }
+  }
+
+  public void createHexViews() {
+    dropHexViews();
+    execute("CREATE VIEW " + actualHexView + " AS SELECT doi, actual_path, major_version_nr, minor_version_nr, "
+        + hex("sha1_checksum") + " AS sha1_checksum, storage_id, accessible_to, embargo_date"
+        + " FROM actual_files");
+    execute("CREATE VIEW " + expectedHexView + " AS SELECT doi, expected_path, removed_original_directory, "
+        + hex("sha1_checksum") + " AS sha1_checksum, easy_file_id, fs_rdb_path, added_during_migration, removed_thumbnail, transformed_name,"
+        + " accessible_to, visible_to, embargo_date"
+        + " FROM expected_files");
+  }
+
+  /**
+   * The views depend on the tables, so they go before a table is dropped or its checksum converted.
+   */
+  public void dropHexViews() {
+    execute("DROP VIEW IF EXISTS " + actualHexView);
+    execute("DROP VIEW IF EXISTS " + expectedHexView);
+  }
+
+  private String hex(String column) {
+    return isPostgreSQL()
+        ? "encode(" + column + ", 'hex')"
+        : "LOWER(RAWTOHEX(" + column + "))";
+  }
+
+  private boolean isCharacterColumn(String table) {
+    return currentSession().doReturningWork(connection -> {
+      DatabaseMetaData metaData = connection.getMetaData();
+      boolean upperCase = metaData.storesUpperCaseIdentifiers();
+      try (ResultSet columns = metaData.getColumns(null, null,
+          upperCase ? table.toUpperCase() : table,
+          upperCase ? "SHA1_CHECKSUM" : "sha1_checksum")) {
+        if (!columns.next())
+          return false;
+        int type = columns.getInt("DATA_TYPE");
+        return type == Types.VARCHAR || type == Types.CHAR;
+      }
+    });
+  }
+
+  private boolean isPostgreSQL() {
+    return ((SessionFactoryImplementor) currentSession().getSessionFactory()).getJdbcServices().getDialect() instanceof PostgreSQL81Dialect;
+  }
+
+  private void execute(String sql) {
+    log.debug(sql);
+    currentSession().createNativeQuery(sql).executeUpdate();
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import nl.knaw.dans.migration.core.tables.ActualDataset;
+import nl.knaw.dans.migration.core.tables.ActualFile;
+import nl.knaw.dans.migration.core.tables.Sha1Converter;
+import org.hibernate.SessionFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams the rows with COPY FROM STDIN in text format on the connection of the current session.
+ * Connections that are not PostgreSQL fall back to JDBC batches.
+ */
+public class CopyActualWriter implements ActualWriter {
+  private static final Logger log = LoggerFactory.getLogger(CopyActualWriter.class);
+
+  static String copyFiles(ActualTables tables) {
+    return "COPY " + tables.getFiles()
+        + " (doi, actual_path, major_version_nr, minor_version_nr, sha1_checksum, storage_id, accessible_to, embargo_date)"
+        + " FROM STDIN";
+  }
+
+  static String copyDatasets(ActualTables tables) {
+    return "COPY " + tables.getDatasets()
+        + " (doi, major_version_nr, minor_version_nr, file_access_request, deaccessioned, license_name, license_url, depositor, citation_year)"
+        + " FROM STDIN";
+  }
+
+  private final SessionFactory sessionFactory;
+  private final JdbcBatchActualWriter fallback;
+  private final AtomicBoolean fallbackLogged = new AtomicBoolean();
+
+  public CopyActualWriter(SessionFactory sessionFactory, int batchSize) {
+    this.sessionFactory = sessionFactory;
+    this.fallback = new JdbcBatchActualWriter(sessionFactory, batchSize);
+  }
+
+  @Override
+  public int write(ActualTables tables, List<ActualDataset> datasets, List<ActualFile> files) {
+    boolean copied = sessionFactory.getCurrentSession().doReturningWork(connection -> {
+      if (!connection.isWrapperFor(PGConnection.class))
+        return false;
+      CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+      if (!datasets.isEmpty())
+        copy(copyManager, copyDatasets(tables), datasetRows(datasets));
+      if (!files.isEmpty())
+        copy(copyManager, copyFiles(tables), fileRows(files));
+      return true;
+    });
+    if (!copied) {
+      if (!fallbackLogged.getAndSet(true))
+        log.warn("Not connected to PostgreSQL, inserting actual rows with JDBC batches instead of COPY");
+      return fallback.write(tables, datasets, files);
+    }
+    log.trace("copied {} datasets and {} files", datasets.size(), files.size());
+    return datasets.size() + files.size();
+  }
+
+  private void copy(CopyManager copyManager, String sql, String rows) throws SQLException {
+    try {
+      copyManager.copyIn(sql, new StringReader(rows));
+    }
+    catch (IOException e) {
+      throw new SQLException("Could not stream rows for " + sql, e);
+    }
+  }
+
+  static String datasetRows(List<ActualDataset> datasets) {
+    StringBuilder rows = new StringBuilder();
+    for (ActualDataset d : datasets) {
+      field(rows, d.getDoi()).append('\t');
+      field(rows, d.getMajorVersionNr()).append('\t');
+      field(rows, d.getMinorVersionNr()).append('\t');
+      field(rows, d.isFileAccessRequest()).append('\t');
+      field(rows, d.isDeaccessioned()).append('\t');
+      field(rows, d.getLicenseName()).append('\t');
+      field(rows, d.getLicenseUri()).append('\t');
+      field(rows, d.getDepositor()).append('\t');
+      field(rows, d.getCitationYear()).append('\n');
+    }
+    return rows.toString();
+  }
+
+  static String fileRows(List<ActualFile> files) {
+    StringBuilder rows = new StringBuilder();
+    for (ActualFile f : files) {
+      field(rows, f.getDoi()).append('\t');
+      field(rows, f.getActualPath()).append('\t');
+      field(rows, f.getMajorVersionNr()).append('\t');
+      field(rows, f.getMinorVersionNr()).append('\t');
+      field(rows, bytea(f.getSha1Checksum())).append('\t');
+      field(rows, f.getStorageId()).append('\t');
+      field(rows, f.getAccessibleTo()).append('\t');
+      field(rows, f.getEmbargoDate()).append('\n');
+    }
+    return rows.toString();
+  }
+
+  /**
+   * @return the hex input format of bytea, null for an empty or invalid checksum
+   */
+  private static String bytea(String hex) {
+    byte[] bytes = Sha1Converter.toBytes(hex);
+    return bytes == null ? null : "\\x" + Sha1Converter.toHex(bytes);
+  }
+
+  /**
+   * Appends a value in the text format of COPY: \N for null, backslash escapes for the delimiters.
+   */
+  private static StringBuilder field(StringBuilder rows, Object value) {
+    if (value == null)
+      return rows.append("\\N");
+    String s = value.toString();
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '\\':
+          rows.append("\\\\");
+          break;
+        case '\t':
+          rows.append("\\t");
+          break;
+        case '\n':
+          rows.append("\\n");
+          break;
+        case '\r':
+          rows.append("\\r");
+          break;
+        default:
+          rows.append(c);
+      }
+    }
+    return rows;
+  }
+}
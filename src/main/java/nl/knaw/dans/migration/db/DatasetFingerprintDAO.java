@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import io.dropwizard.hibernate.AbstractDAO;
+import nl.knaw.dans.migration.core.tables.DatasetFingerprint;
+import nl.knaw.dans.migration.core.tables.DatasetFingerprint.Side;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.List;
+
+public class DatasetFingerprintDAO extends AbstractDAO<DatasetFingerprint> {
+  private static final Logger log = LoggerFactory.getLogger(DatasetFingerprintDAO.class);
+
+  public DatasetFingerprintDAO(SessionFactory sessionFactory) {
+    super(sessionFactory);
+  }
+
+  /**
+   * Inserts with a JDBC batch, the fingerprints do not become entities of the session.
+   *
+   * @param tables the staging table of a full load is copied into the live table by the swap
+   */
+  public void insert(ActualTables tables, List<DatasetFingerprint> fingerprints) {
+    if (fingerprints.isEmpty())
+      return;
+    currentSession().doWork(connection -> {
+      try (PreparedStatement statement = connection.prepareStatement(
+          "INSERT INTO " + tables.getFingerprints() + " (doi, side, files, fingerprint) VALUES (?, ?, ?, ?)")) {
+        for (DatasetFingerprint f : fingerprints) {
+          statement.setString(1, f.getDoi());
+          statement.setString(2, f.getSide().name());
+          statement.setInt(3, f.getFiles());
+          statement.setLong(4, f.getFingerprint());
+          statement.addBatch();
+        }
+        statement.executeBatch();
+      }
+    });
+    log.trace("inserted {} DatasetFingerprint", fingerprints.size());
+  }
+
+  /**
+   * @param dois without prefix
+   */
+  public void deleteByDois(Side side, Collection<String> dois) {
+    int r = 0;
+    for (List<String> chunk : BulkDeletes.chunks(dois))
+      r += currentSession()
+          .createQuery("DELETE FROM DatasetFingerprint WHERE side = :side AND doi IN (:dois)")
+          .setParameter("side", side)
+          .setParameterList("dois", chunk)
+          .executeUpdate();
+    log.trace("deleted {} {} DatasetFingerprint", r, side);
+  }
+
+  public void deleteAll(Side side) {
+    int r = currentSession()
+        .createQuery("DELETE FROM DatasetFingerprint WHERE side = :side")
+        .setParameter("side", side)
+        .executeUpdate();
+    log.trace("deleted {} {} DatasetFingerprint", r, side);
+  }
+
+  /**
+   * Keyset pagination in the order of the primary key, both sides of a DOI are adjacent.
+   *
+   * @param after the last fingerprint of the previous page, null for the first page
+   */
+  public List<DatasetFingerprint> page(DatasetFingerprint after, int limit) {
+    if (after == null)
+      return currentSession()
+          .createQuery("FROM DatasetFingerprint ORDER BY doi, side", DatasetFingerprint.class)
+          .setMaxResults(limit)
+          .list();
+    // a row value comparison is a single range of the primary key index
+    return currentSession()
+        .createNativeQuery("SELECT * FROM dataset_fingerprints WHERE (doi, side) > (:doi, :side) ORDER BY doi, side", DatasetFingerprint.class)
+        .setParameter("doi", after.getDoi())
+        .setParameter("side", after.getSide().name())
+        .setMaxResults(limit)
+        .list();
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The integer ids of DOIs in the datasets dictionary, cached in memory.
+ * Missing DOIs are added in a transaction of their own: a cached id must stay valid
+ * when the transaction of the caller rolls back.
+ */
+public class DatasetIds {
+  private final SessionFactory sessionFactory;
+  private final Cache<String, Integer> ids;
+
+  public DatasetIds(SessionFactory sessionFactory, long maximumSize) {
+    this.sessionFactory = sessionFactory;
+    this.ids = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .build();
+  }
+
+  /**
+   * @param dois without prefix
+   */
+  public Map<String, Integer> get(Collection<String> dois) {
+    return ids.getAll(dois, this::lookUpOrAdd);
+  }
+
+  private Map<String, Integer> lookUpOrAdd(Set<? extends String> dois) {
+    try (Session session = sessionFactory.openSession()) {
+      Transaction transaction = session.beginTransaction();
+      try {
+        Map<String, Integer> found = session.doReturningWork(connection -> {
+          Map<String, Integer> existing = select(connection, dois);
+          List<String> missing = new ArrayList<>(dois);
+          missing.removeAll(existing.keySet());
+          if (missing.isEmpty())
+            return existing;
+          insert(connection, missing);
+          return select(connection, dois);
+        });
+        transaction.commit();
+        return found;
+      }
+      catch (RuntimeException e) {
+        transaction.rollback();
+        throw e;
+      }
+    }
+  }
+
+  private static Map<String, Integer> select(Connection connection, Collection<? extends String> dois) throws SQLException {
+    Map<String, Integer> found = new HashMap<>();
+    for (List<? extends String> chunk : BulkDeletes.chunks(dois)) {
+      String sql = "SELECT id, doi FROM datasets WHERE doi IN (" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+      try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        for (int i = 0; i < chunk.size(); i++)
+          statement.setString(i + 1, chunk.get(i));
+        try (ResultSet rs = statement.executeQuery()) {
+          while (rs.next())
+            found.put(rs.getString(2), rs.getInt(1));
+        }
+      }
+    }
+    return found;
+  }
+
+  private static void insert(Connection connection, List<String> dois) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement("INSERT INTO datasets (doi) VALUES (?)")) {
+      for (String doi : dois) {
+        statement.setString(1, doi);
+        statement.addBatch();
+      }
+      statement.executeBatch();
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import io.dropwizard.hibernate.AbstractDAO;
+import nl.knaw.dans.migration.core.tables.FileDifference;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+
+public class FileDifferenceDAO extends AbstractDAO<FileDifference> {
+  private static final Logger log = LoggerFactory.getLogger(FileDifferenceDAO.class);
+
+  public FileDifferenceDAO(SessionFactory sessionFactory) {
+    super(sessionFactory);
+  }
+
+  public void deleteAll() {
+    if (BulkDeletes.canTruncate(currentSession())) {
+      log.trace("truncating file_differences");
+      currentSession()
+          .createNativeQuery("TRUNCATE TABLE file_differences")
+          .executeUpdate();
+      return;
+    }
+    int r = currentSession()
+        .createQuery("DELETE FROM FileDifference")
+        .executeUpdate();
+    log.trace("deleted {} from FileDifference", r);
+  }
+
+  /**
+   * Inserts with a JDBC batch, the differences do not become entities of the session.
+   */
+  public void insert(List<FileDifference> differences) {
+    if (differences.isEmpty())
+      return;
+    currentSession().doWork(connection -> {
+      try (PreparedStatement statement = connection.prepareStatement(
+          "INSERT INTO file_differences (doi, path, category, expected_value, actual_value) VALUES (?, ?, ?, ?, ?)")) {
+        for (FileDifference d : differences) {
+          statement.setString(1, d.getDoi());
+          statement.setString(2, d.getPath());
+          statement.setString(3, d.getCategory().name());
+          statement.setString(4, d.getExpectedValue());
+          statement.setString(5, d.getActualValue());
+          statement.addBatch();
+        }
+        statement.executeBatch();
+      }
+    });
+    log.trace("inserted {} FileDifference", differences.size());
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import io.dropwizard.hibernate.AbstractDAO;
+import nl.knaw.dans.migration.core.FileRow;
+import nl.knaw.dans.migration.core.tables.Sha1Converter;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads expected_files and actual_files page by page, ordered by DOI and path. The actual files are those of the latest version
+ * of each dataset in actual_datasets, a latest version without files has none. In the layouts other than PER_VERSION actual_files is a view.
+ * A page continues after the key of the last row of the previous page, so each page is a range scan of the compare index.
+ * PostgreSQL orders with COLLATE "C", the byte order that the comparison in the JVM uses too.
+ * Lists of DOIs should stay far below the limits of the databases for bind parameters.
+ */
+public class FileRowsDAO extends AbstractDAO<FileRow> {
+
+  public FileRowsDAO(SessionFactory sessionFactory) {
+    super(sessionFactory);
+  }
+
+  /**
+   * @param dois without prefix, null for all
+   */
+  public List<FileRow> actualPage(@Nullable Collection<String> dois, FileRow after, int limit) {
+    String key = "f.doi" + collate() + ", f.actual_path" + collate() + ", f.major_version_nr, f.minor_version_nr";
+    String sql = "SELECT f.doi, f.actual_path, f.major_version_nr, f.minor_version_nr, f.sha1_checksum, f.accessible_to, f.embargo_date"
+        + " FROM actual_files f JOIN actual_datasets d ON d.doi = f.doi"
+        + " AND d.major_version_nr = f.major_version_nr AND d.minor_version_nr = f.minor_version_nr"
+        + " WHERE NOT EXISTS (SELECT 1 FROM actual_datasets l WHERE l.doi = d.doi AND (l.major_version_nr > d.major_version_nr"
+        + " OR l.major_version_nr = d.major_version_nr AND l.minor_version_nr > d.minor_version_nr))"
+        + (after == null ? "" : " AND (" + key + ") > (?, ?, ?, ?)")
+        + in("f.doi", dois)
+        + " ORDER BY " + key + " LIMIT ?";
+    return page(sql, after, dois, limit, rs -> new FileRow(rs.getString(1), rs.getString(2), Sha1Converter.toHex(rs.getBytes(5)),
+        rs.getString(6), rs.getString(7), rs.getString(1), rs.getString(2), rs.getInt(3), rs.getInt(4)));
+  }
+
+  /**
+   * Skips the thumbnails that the migration removed.
+   *
+   * @param dois without prefix, null for all
+   */
+  public List<FileRow> expectedPage(@Nullable Collection<String> dois, FileRow after, int limit) {
+    String key = "doi" + collate() + ", expected_path" + collate() + ", easy_file_id" + collate() + ", fs_rdb_path" + collate();
+    String sql = "SELECT doi, expected_path, easy_file_id, fs_rdb_path, sha1_checksum, accessible_to, embargo_date"
+        + " FROM expected_files"
+        + " WHERE removed_thumbnail = false"
+        + (after == null ? "" : " AND (" + key + ") > (?, ?, ?, ?)")
+        + in("doi", dois)
+        + " ORDER BY " + key + " LIMIT ?";
+    return page(sql, after, dois, limit, rs -> new FileRow(rs.getString(1), rs.getString(2), Sha1Converter.toHex(rs.getBytes(5)),
+        rs.getString(6), rs.getString(7), rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4)));
+  }
+
+  private interface RowMapper {
+    FileRow map(ResultSet rs) throws java.sql.SQLException;
+  }
+
+  private static String in(String column, @Nullable Collection<String> dois) {
+    return dois == null ? "" : " AND " + column + " IN (" + String.join(", ", Collections.nCopies(dois.size(), "?")) + ")";
+  }
+
+  private List<FileRow> page(String sql, FileRow after, @Nullable Collection<String> dois, int limit, RowMapper mapper) {
+    return currentSession().doReturningWork(connection -> {
+      List<FileRow> rows = new ArrayList<>(limit);
+      try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        int i = 1;
+        if (after != null)
+          for (Object value : after.getPosition())
+            statement.setObject(i++, value);
+        if (dois != null)
+          for (String doi : dois)
+            statement.setString(i++, doi);
+        statement.setInt(i, limit);
+        try (ResultSet rs = statement.executeQuery()) {
+          while (rs.next())
+            rows.add(mapper.map(rs));
+        }
+      }
+      return rows;
+    });
+  }
+
+  private String collate() {
+    return isPostgreSQL() ? " COLLATE \"C\"" : "";
+  }
+
+  private boolean isPostgreSQL() {
+    return ((SessionFactoryImplementor) currentSession().getSessionFactory()).getJdbcServices().getDialect() instanceof PostgreSQL81Dialect;
+  }
+}
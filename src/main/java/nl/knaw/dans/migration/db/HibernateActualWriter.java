@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import nl.knaw.dans.migration.core.tables.ActualDataset;
+import nl.knaw.dans.migration.core.tables.ActualFile;
+import org.hibernate.SessionFactory;
+
+import java.util.List;
+
+/**
+ * Saves the rows as entities, batched only when hibernate.jdbc.batch_size is configured.
+ */
+public class HibernateActualWriter implements ActualWriter {
+  private final ActualFileDAO actualFileDAO;
+  private final ActualDatasetDAO actualDatasetDAO;
+
+  public HibernateActualWriter(SessionFactory sessionFactory) {
+    this.actualFileDAO = new ActualFileDAO(sessionFactory);
+    this.actualDatasetDAO = new ActualDatasetDAO(sessionFactory);
+  }
+
+  @Override
+  public int write(ActualTables tables, List<ActualDataset> datasets, List<ActualFile> files) {
+    if (tables != ActualTables.LIVE)
+      throw new IllegalArgumentException("The entities are mapped to the live tables, can't write into " + tables + " tables");
+    datasets.forEach(actualDatasetDAO::create);
+    files.forEach(actualFileDAO::create);
+    return datasets.size() + files.size();
+  }
+}
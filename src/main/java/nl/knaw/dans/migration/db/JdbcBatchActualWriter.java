@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import nl.knaw.dans.migration.core.tables.ActualDataset;
+import nl.knaw.dans.migration.core.tables.ActualFile;
+import nl.knaw.dans.migration.core.tables.Sha1Converter;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Inserts the rows with JDBC batches on the connection of the current session,
+ * so they are part of the same transaction as the deletes and the load progress.
+ * The rows do not become entities of the session.
+ */
+public class JdbcBatchActualWriter implements ActualWriter {
+  private static final Logger log = LoggerFactory.getLogger(JdbcBatchActualWriter.class);
+
+  static String insertFile(ActualTables tables) {
+    return "INSERT INTO " + tables.getFiles()
+        + " (doi, actual_path, major_version_nr, minor_version_nr, sha1_checksum, storage_id, accessible_to, embargo_date)"
+        + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+  }
+
+  static String insertDataset(ActualTables tables) {
+    return "INSERT INTO " + tables.getDatasets()
+        + " (doi, major_version_nr, minor_version_nr, file_access_request, deaccessioned, license_name, license_url, depositor, citation_year)"
+        + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+  }
+
+  private final SessionFactory sessionFactory;
+  private final int batchSize;
+
+  public JdbcBatchActualWriter(SessionFactory sessionFactory, int batchSize) {
+    this.sessionFactory = sessionFactory;
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  public int write(ActualTables tables, List<ActualDataset> datasets, List<ActualFile> files) {
+    sessionFactory.getCurrentSession().doWork(connection -> {
+      insertDatasets(connection, tables, datasets);
+      insertFiles(connection, tables, files);
+    });
+    log.trace("inserted {} datasets and {} files", datasets.size(), files.size());
+    return datasets.size() + files.size();
+  }
+
+  private void insertDatasets(Connection connection, ActualTables tables, List<ActualDataset> datasets) throws SQLException {
+    if (datasets.isEmpty())
+      return;
+    try (PreparedStatement statement = connection.prepareStatement(insertDataset(tables))) {
+      int pending = 0;
+      for (ActualDataset d : datasets) {
+        statement.setString(1, d.getDoi());
+        statement.setObject(2, d.getMajorVersionNr(), Types.INTEGER);
+        statement.setObject(3, d.getMinorVersionNr(), Types.INTEGER);
+        statement.setObject(4, d.isFileAccessRequest(), Types.BOOLEAN);
+        statement.setObject(5, d.isDeaccessioned(), Types.BOOLEAN);
+        statement.setString(6, d.getLicenseName());
+        statement.setString(7, d.getLicenseUri());
+        statement.setString(8, d.getDepositor());
+        statement.setString(9, d.getCitationYear());
+        statement.addBatch();
+        if (++pending == batchSize) {
+          statement.executeBatch();
+          pending = 0;
+        }
+      }
+      if (pending > 0)
+        statement.executeBatch();
+    }
+  }
+
+  private void insertFiles(Connection connection, ActualTables tables, List<ActualFile> files) throws SQLException {
+    if (files.isEmpty())
+      return;
+    try (PreparedStatement statement = connection.prepareStatement(insertFile(tables))) {
+      int pending = 0;
+      for (ActualFile f : files) {
+        statement.setString(1, f.getDoi());
+        statement.setString(2, f.getActualPath());
+        statement.setInt(3, f.getMajorVersionNr());
+        statement.setInt(4, f.getMinorVersionNr());
+        statement.setBytes(5, Sha1Converter.toBytes(f.getSha1Checksum()));
+        statement.setString(6, f.getStorageId());
+        statement.setString(7, f.getAccessibleTo());
+        statement.setString(8, f.getEmbargoDate());
+        statement.addBatch();
+        if (++pending == batchSize) {
+          statement.executeBatch();
+          pending = 0;
+        }
+      }
+      if (pending > 0)
+        statement.executeBatch();
+    }
+  }
+}
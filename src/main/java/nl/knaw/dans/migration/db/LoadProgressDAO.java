@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import io.dropwizard.hibernate.AbstractDAO;
+import nl.knaw.dans.migration.core.tables.LoadProgress;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class LoadProgressDAO extends AbstractDAO<LoadProgress> {
+  private static final Logger log = LoggerFactory.getLogger(LoadProgressDAO.class);
+
+  public LoadProgressDAO(SessionFactory sessionFactory) {
+    super(sessionFactory);
+  }
+
+  public void create(LoadProgress progress) {
+    log.trace(progress.toString());
+    currentSession().save(progress);
+  }
+
+  public Set<String> findDois(String runId) {
+    Set<String> dois = new HashSet<>(currentSession()
+        .createQuery("SELECT doi FROM LoadProgress WHERE runId = :runId", String.class)
+        .setParameter("runId", runId)
+        .list());
+    log.trace("found {} DOIs of run {} in LoadProgress", dois.size(), runId);
+    return dois;
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import io.dropwizard.hibernate.AbstractDAO;
+import nl.knaw.dans.migration.core.tables.LoadRun;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public class LoadRunDAO extends AbstractDAO<LoadRun> {
+  private static final Logger log = LoggerFactory.getLogger(LoadRunDAO.class);
+
+  public LoadRunDAO(SessionFactory sessionFactory) {
+    super(sessionFactory);
+  }
+
+  public void create(LoadRun run) {
+    log.trace(run.toString());
+    currentSession().save(run);
+  }
+
+  public Optional<LoadRun> find(String runId) {
+    return Optional.ofNullable(get(runId));
+  }
+
+  public void finish(String runId) {
+    log.trace("finishing LoadRun {}", runId);
+    int r = currentSession()
+        .createQuery("UPDATE LoadRun SET finishedAt = :now WHERE runId = :runId")
+        .setParameter("now", Instant.now())
+        .setParameter("runId", runId)
+        .executeUpdate();
+    log.trace("finished {} LoadRun", r);
+  }
+
+  public Optional<LoadRun> findLastFinished() {
+    return currentSession()
+        .createQuery("FROM LoadRun WHERE finishedAt IS NOT NULL ORDER BY startedAt DESC", LoadRun.class)
+        .setMaxResults(1)
+        .uniqueResultOptional();
+  }
+}
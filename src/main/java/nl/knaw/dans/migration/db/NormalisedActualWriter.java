@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import nl.knaw.dans.migration.core.tables.ActualDataset;
+import nl.knaw.dans.migration.core.tables.ActualFile;
+import nl.knaw.dans.migration.core.tables.Sha1Converter;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the files in the NORMALISED layout: the DOI and path of a row are integer ids.
+ * The dataset ids come from the cached {@link DatasetIds}. Paths are numbered per dataset in the transaction of the rows,
+ * a dataset is written once per load so its paths are looked up once. The datasets go to the writer of the configured type.
+ */
+public class NormalisedActualWriter implements ActualWriter {
+  private static final Logger log = LoggerFactory.getLogger(NormalisedActualWriter.class);
+
+  static final String insertRef = "INSERT INTO actual_file_refs"
+      + " (dataset_id, path_id, major_version_nr, minor_version_nr, sha1_checksum, storage_id, accessible_to, embargo_date)"
+      + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+  private final SessionFactory sessionFactory;
+  private final int batchSize;
+  private final ActualWriter datasetWriter;
+  private final DatasetIds datasetIds;
+
+  public NormalisedActualWriter(SessionFactory sessionFactory, int batchSize, ActualWriter datasetWriter, DatasetIds datasetIds) {
+    this.sessionFactory = sessionFactory;
+    this.batchSize = batchSize;
+    this.datasetWriter = datasetWriter;
+    this.datasetIds = datasetIds;
+  }
+
+  @Override
+  public int write(ActualTables tables, List<ActualDataset> datasets, List<ActualFile> files) {
+    if (tables != ActualTables.LIVE)
+      throw new IllegalArgumentException("The normalised layout has no " + tables + " tables");
+    int rows = datasetWriter.write(tables, datasets, Collections.emptyList());
+    if (files.isEmpty())
+      return rows;
+    Map<String, List<ActualFile>> byDoi = new LinkedHashMap<>();
+    for (ActualFile file : files)
+      byDoi.computeIfAbsent(file.getDoi(), doi -> new ArrayList<>()).add(file);
+    Map<String, Integer> ids = datasetIds.get(byDoi.keySet());
+    sessionFactory.getCurrentSession().doWork(connection -> {
+      for (Map.Entry<String, List<ActualFile>> entry : byDoi.entrySet()) {
+        int datasetId = ids.get(entry.getKey());
+        Map<String, Integer> pathIds = pathIds(connection, datasetId, paths(entry.getValue()));
+        insertRefs(connection, datasetId, pathIds, entry.getValue());
+      }
+    });
+    log.trace("inserted {} files of {} datasets", files.size(), byDoi.size());
+    return rows + files.size();
+  }
+
+  private static Set<String> paths(List<ActualFile> files) {
+    Set<String> paths = new LinkedHashSet<>();
+    for (ActualFile file : files)
+      paths.add(file.getActualPath());
+    return paths;
+  }
+
+  /**
+   * @return the ids of the paths of the dataset, new paths are numbered after the existing ones
+   */
+  private Map<String, Integer> pathIds(Connection connection, int datasetId, Collection<String> paths) throws SQLException {
+    Map<String, Integer> ids = new HashMap<>();
+    int maxId = 0;
+    try (PreparedStatement statement = connection.prepareStatement("SELECT path_id, path FROM dataset_paths WHERE dataset_id = ?")) {
+      statement.setInt(1, datasetId);
+      try (ResultSet rs = statement.executeQuery()) {
+        while (rs.next()) {
+          ids.put(rs.getString(2), rs.getInt(1));
+          maxId = Math.max(maxId, rs.getInt(1));
+        }
+      }
+    }
+    try (PreparedStatement statement = connection.prepareStatement("INSERT INTO dataset_paths (dataset_id, path_id, path) VALUES (?, ?, ?)")) {
+      int pending = 0;
+      for (String path : paths) {
+        if (ids.containsKey(path))
+          continue;
+        ids.put(path, ++maxId);
+        statement.setInt(1, datasetId);
+        statement.setInt(2, maxId);
+        statement.setString(3, path);
+        statement.addBatch();
+        if (++pending == batchSize) {
+          statement.executeBatch();
+          pending = 0;
+        }
+      }
+      if (pending > 0)
+        statement.executeBatch();
+    }
+    return ids;
+  }
+
+  private void insertRefs(Connection connection, int datasetId, Map<String, Integer> pathIds, List<ActualFile> files) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(insertRef)) {
+      int pending = 0;
+      for (ActualFile f : files) {
+        statement.setInt(1, datasetId);
+        statement.setInt(2, pathIds.get(f.getActualPath()));
+        statement.setInt(3, f.getMajorVersionNr());
+        statement.setInt(4, f.getMinorVersionNr());
+        statement.setBytes(5, Sha1Converter.toBytes(f.getSha1Checksum()));
+        statement.setString(6, f.getStorageId());
+        statement.setString(7, f.getAccessibleTo());
+        statement.setString(8, f.getEmbargoDate());
+        statement.addBatch();
+        if (++pending == batchSize) {
+          statement.executeBatch();
+          pending = 0;
+        }
+      }
+      if (pending > 0)
+        statement.executeBatch();
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import io.dropwizard.hibernate.AbstractDAO;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The actual files in the NORMALISED layout. Deletes keep the dictionaries of DOIs and paths:
+ * their ids are cached and a reload of a dataset reuses them.
+ */
+public class NormalisedFilesDAO extends AbstractDAO<NormalisedFilesDAO> {
+  private static final Logger log = LoggerFactory.getLogger(NormalisedFilesDAO.class);
+
+  /**
+   * The view of the previous releases, actual_files itself is the view now.
+   */
+  private static final String legacyView = "actual_files_resolved";
+
+  public NormalisedFilesDAO(SessionFactory sessionFactory) {
+    super(sessionFactory);
+  }
+
+  /**
+   * Creates actual_files as the rows with the DOI and path instead of their ids, SchemaDAO has dropped the table.
+   */
+  public void createView() {
+    log.trace("creating view {}", SchemaDAO.actualFiles);
+    currentSession().createNativeQuery("DROP VIEW IF EXISTS " + legacyView).executeUpdate();
+    currentSession().createNativeQuery("DROP VIEW IF EXISTS " + SchemaDAO.actualFiles).executeUpdate();
+    currentSession().createNativeQuery("CREATE VIEW " + SchemaDAO.actualFiles + " AS"
+            + " SELECT d.doi, p.path AS actual_path, f.major_version_nr, f.minor_version_nr, f.sha1_checksum, f.storage_id, f.accessible_to, f.embargo_date"
+            + " FROM actual_file_refs f"
+            + " JOIN datasets d ON d.id = f.dataset_id"
+            + " JOIN dataset_paths p ON p.dataset_id = f.dataset_id AND p.path_id = f.path_id")
+        .executeUpdate();
+  }
+
+  public void deleteByDoi(String doi) {
+    int r = currentSession()
+        .createQuery("DELETE FROM ActualFileRef WHERE datasetId IN (SELECT id FROM DatasetRef WHERE doi = :doi)")
+        .setParameter("doi", doi)
+        .executeUpdate();
+    log.trace("deleted {} from ActualFileRef", r);
+  }
+
+  public void deleteByDois(Collection<String> dois) {
+    int r = 0;
+    for (List<String> chunk : BulkDeletes.chunks(dois))
+      r += currentSession()
+          .createQuery("DELETE FROM ActualFileRef WHERE datasetId IN (SELECT id FROM DatasetRef WHERE doi IN (:dois))")
+          .setParameterList("dois", chunk)
+          .executeUpdate();
+    log.trace("deleted {} from ActualFileRef", r);
+  }
+
+  public void deleteAll() {
+    int r = BulkDeletes.canTruncate(currentSession())
+        ? currentSession().createNativeQuery("TRUNCATE TABLE actual_file_refs").executeUpdate()
+        : currentSession().createQuery("DELETE FROM ActualFileRef").executeUpdate();
+    log.trace("deleted {} from ActualFileRef", r);
+  }
+}
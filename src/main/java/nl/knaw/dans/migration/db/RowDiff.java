@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Compares the stored rows of some DOIs with freshly read rows by their primary key.
+ *
+ * @param <K> the primary key, with equals and hashCode
+ * @param <T> the entity, equal when all columns are equal
+ */
+public class RowDiff<K, T> {
+  private final List<T> inserts = new ArrayList<>();
+  private final List<T> updates = new ArrayList<>();
+  private final List<T> deletes;
+  private int unchanged = 0;
+
+  public RowDiff(Collection<T> stored, Collection<T> fresh, Function<T, K> key) {
+    Map<K, T> remaining = new LinkedHashMap<>();
+    for (T row : stored)
+      remaining.put(key.apply(row), row);
+    for (T row : fresh) {
+      T old = remaining.remove(key.apply(row));
+      if (old == null)
+        inserts.add(row);
+      else if (old.equals(row))
+        unchanged++;
+      else
+        updates.add(row);
+    }
+    deletes = new ArrayList<>(remaining.values());
+  }
+
+  /**
+   * @return fresh rows with a key that is not stored
+   */
+  public List<T> getInserts() {
+    return inserts;
+  }
+
+  /**
+   * @return fresh rows of which a column differs from the stored row with the same key
+   */
+  public List<T> getUpdates() {
+    return updates;
+  }
+
+  /**
+   * @return stored rows with a key that is not among the fresh rows
+   */
+  public List<T> getDeletes() {
+    return deletes;
+  }
+
+  public int getUnchanged() {
+    return unchanged;
+  }
+
+  /**
+   * @return the number of rows that need a statement
+   */
+  public int getChanges() {
+    return inserts.size() + updates.size() + deletes.size();
+  }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import io.dropwizard.hibernate.AbstractDAO;
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Array;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the tables of the verification database that do not exist yet, as the entities describe them.
+ * On PostgreSQL actual_files and expected_files can be partitioned by a hash of the DOI:
+ * a partition of DOIs can be reloaded with TRUNCATE, and joins on the DOI can run partition by partition.
+ * In the layouts other than PER_VERSION actual_files is a view over the tables of the layout, created by the DAO of the layout.
+ */
+public class SchemaDAO extends AbstractDAO<SchemaDAO> {
+  private static final Logger log = LoggerFactory.getLogger(SchemaDAO.class);
+
+  static final String actualFiles = "actual_files";
+  static final String[] partitionedTables = { actualFiles, "expected_files" };
+
+  static final TableKeys actualFilesKeys = new TableKeys(actualFiles, "doi, actual_path, major_version_nr, minor_version_nr")
+      .index("af_path_index", "actual_path")
+      .index("af_checksum_index", "sha1_checksum")
+      .index("af_doi_index", "doi")
+      // the order of the compare command, the primary key serves it on other databases
+      .postgreSQLIndex("af_compare_index", "doi COLLATE \"C\", actual_path COLLATE \"C\", major_version_nr, minor_version_nr");
+  static final TableKeys actualDatasetsKeys = new TableKeys("actual_datasets", "doi, major_version_nr, minor_version_nr")
+      .index("ad_doi_index", "doi");
+
+  public SchemaDAO(SessionFactory sessionFactory) {
+    super(sessionFactory);
+  }
+
+  /**
+   * @param partitions the number of hash partitions of actual_files and expected_files, 0 for plain tables
+   * @param actualFilesTable false if actual_files is the view of another layout than PER_VERSION,
+   *                         a table with rows fails instead of hiding them behind the view
+   */
+  public void create(int partitions, boolean actualFilesTable) {
+    if (partitions > 0 && !isPostgreSQL())
+      throw new IllegalStateException("Partitioned tables need PostgreSQL");
+    String binary = isPostgreSQL() ? "bytea" : "VARBINARY(20)";
+    if (actualFilesTable) {
+      if (isView(actualFiles)) {
+        log.warn("Dropping the view {} of another layout, reload the actual files in the layout PER_VERSION", actualFiles);
+        execute("DROP VIEW " + actualFiles);
+      }
+      createTable(actualFiles, partitions, "doi varchar(255) NOT NULL, actual_path varchar(1024) NOT NULL,"
+          + " major_version_nr integer NOT NULL, minor_version_nr integer NOT NULL,"
+          + " sha1_checksum " + binary + ", storage_id varchar(60), accessible_to varchar(255), embargo_date varchar(255),"
+          + " CONSTRAINT " + actualFilesKeys.primaryKeyName() + " PRIMARY KEY (" + actualFilesKeys.primaryKey + ")");
+      createIndexes(actualFilesKeys);
+    }
+    else if (exists(actualFiles) && !isView(actualFiles)) {
+      if (hasRows(actualFiles))
+        throw new IllegalStateException(String.format("The table %s has rows of the layout PER_VERSION, in the configured layout it is a view."
+            + " Delete the rows or keep the layout PER_VERSION.", actualFiles));
+      log.info("Dropping the empty table {}, in the configured layout it is a view", actualFiles);
+      execute("DROP TABLE " + actualFiles);
+    }
+    createTable("actual_datasets", 0, "doi varchar(255) NOT NULL, major_version_nr integer NOT NULL, minor_version_nr integer NOT NULL,"
+        + " file_access_request boolean, deaccessioned boolean, license_name varchar(255), license_url varchar(255),"
+        + " depositor varchar(255), citation_year varchar(255),"
+        + " CONSTRAINT " + actualDatasetsKeys.primaryKeyName() + " PRIMARY KEY (" + actualDatasetsKeys.primaryKey + ")");
+    createIndexes(actualDatasetsKeys);
+    createTable("expected_files", partitions, "doi varchar(255) NOT NULL, expected_path varchar(1024) NOT NULL,"
+        + " removed_original_directory boolean NOT NULL, sha1_checksum " + binary + ", easy_file_id varchar(64) NOT NULL,"
+        + " fs_rdb_path varchar(1024) NOT NULL, added_during_migration boolean NOT NULL, removed_thumbnail boolean NOT NULL,"
+        + " transformed_name boolean NOT NULL, accessible_to varchar(255), visible_to varchar(255), embargo_date varchar(255),"
+        + " CONSTRAINT expected_files_pkey PRIMARY KEY (doi, expected_path, easy_file_id, fs_rdb_path)");
+    createIndex("expected_files", "ef_accessible_index", "accessible_to");
+    createTable("expected_datasets", 0, "doi varchar(255) NOT NULL, access_category varchar(255), deleted boolean NOT NULL,"
+        + " depositor varchar(255), citation_year varchar(255), embargo_date varchar(255), license_name varchar(255),"
+        + " license_url varchar(255), expected_versions integer NOT NULL,"
+        + " CONSTRAINT expected_datasets_pkey PRIMARY KEY (doi)");
+    createIndex("expected_datasets", "ed_doi_index", "doi");
+    createTable("input_datasets", 0, "doi varchar(255) NOT NULL, easy_dataset_id varchar(255) NOT NULL, uuid_v1 varchar(255),"
+        + " uuid_v2 varchar(255), status varchar(255), comment varchar(255), batch varchar(255) NOT NULL, source varchar(255) NOT NULL,"
+        + " CONSTRAINT input_datasets_pkey PRIMARY KEY (doi, batch, source, easy_dataset_id)");
+    createIndex("input_datasets", "id_doi_index", "doi");
+    createIndex("input_datasets", "id_status_index", "status");
+    createTable("load_runs", 0, "run_id varchar(64) NOT NULL, kind varchar(16), started_at timestamp, finished_at timestamp,"
+        + " CONSTRAINT load_runs_pkey PRIMARY KEY (run_id)");
+    createTable("load_progress", 0, "run_id varchar(64) NOT NULL, doi varchar(255) NOT NULL,"
+        + " CONSTRAINT load_progress_pkey PRIMARY KEY (run_id, doi)");
+    createTable("actual_file_ranges", 0, "doi varchar(255) NOT NULL, actual_path varchar(1024) NOT NULL,"
+        + " first_major_version_nr integer NOT NULL, first_minor_version_nr integer NOT NULL,"
+        + " last_major_version_nr integer NOT NULL, last_minor_version_nr integer NOT NULL,"
+        + " sha1_checksum " + binary + ", storage_id varchar(60), accessible_to varchar(255), embargo_date varchar(255),"
+        + " CONSTRAINT actual_file_ranges_pkey PRIMARY KEY (doi, actual_path, first_major_version_nr, first_minor_version_nr)");
+    createIndex("actual_file_ranges", "afr_doi_index", "doi");
+    createTable("actual_file_versions", 0, "doi varchar(255) NOT NULL, major_version_nr integer NOT NULL, minor_version_nr integer NOT NULL,"
+        + " CONSTRAINT actual_file_versions_pkey PRIMARY KEY (doi, major_version_nr, minor_version_nr)");
+    createTable("datasets", 0, "id integer GENERATED BY DEFAULT AS IDENTITY, doi varchar(255) NOT NULL,"
+        + " CONSTRAINT datasets_pkey PRIMARY KEY (id), CONSTRAINT datasets_doi_unique UNIQUE (doi)");
+    createTable("dataset_paths", 0, "dataset_id integer NOT NULL, path_id integer NOT NULL, path varchar(1024) NOT NULL,"
+        + " CONSTRAINT dataset_paths_pkey PRIMARY KEY (dataset_id, path_id)");
+    createIndex("dataset_paths", "UNIQUE", "dp_path_index", "dataset_id, path");
+    createTable("actual_file_refs", 0, "dataset_id integer NOT NULL, path_id integer NOT NULL,"
+        + " major_version_nr integer NOT NULL, minor_version_nr integer NOT NULL,"
+        + " sha1_checksum " + binary + ", storage_id varchar(60), accessible_to varchar(255), embargo_date varchar(255),"
+        + " CONSTRAINT actual_file_refs_pkey PRIMARY KEY (dataset_id, path_id, major_version_nr, minor_version_nr)");
+    createTable("file_differences", 0, "id bigint GENERATED BY DEFAULT AS IDENTITY, doi varchar(255) NOT NULL, path varchar(1024) NOT NULL,"
+        + " category varchar(32) NOT NULL, expected_value varchar(1024), actual_value varchar(1024),"
+        + " CONSTRAINT file_differences_pkey PRIMARY KEY (id)");
+    createIndex("file_differences", "fd_doi_index", "doi");
+    createTable("dataset_fingerprints", 0, "doi varchar(255) NOT NULL, side varchar(16) NOT NULL, files integer NOT NULL, fingerprint bigint NOT NULL,"
+        + " CONSTRAINT dataset_fingerprints_pkey PRIMARY KEY (doi, side)");
+    if (isPostgreSQL()) {
+      // the order of the compare command, the primary key serves it on other databases
+      createIndex("expected_files", "ef_compare_index",
+          "doi COLLATE \"C\", expected_path COLLATE \"C\", easy_file_id COLLATE \"C\", fs_rdb_path COLLATE \"C\"");
+    }
+  }
+
+  /**
+   * @return the number of hash partitions of the table, 0 if it is not partitioned
+   */
+  public int countPartitions(String table) {
+    if (!isPostgreSQL())
+      return 0;
+    return ((Number) currentSession()
+        .createNativeQuery("SELECT count(*) FROM pg_inherits WHERE inhparent = CAST(:table AS regclass)")
+        .setParameter("table", table)
+        .uniqueResult()).intValue();
+  }
+
+  public void truncatePartition(String table, int partition) {
+    execute("TRUNCATE TABLE " + partitionName(table, partition));
+  }
+
+  /**
+   * Deletes the ACTUAL fingerprints of the DOIs that belong to the partition of the table.
+   */
+  public void deleteActualFingerprints(String table, int partitions, int partition) {
+    currentSession().doWork(connection -> {
+      try (PreparedStatement statement = connection.prepareStatement(
+          "DELETE FROM dataset_fingerprints WHERE side = 'ACTUAL' AND satisfies_hash_partition(CAST(? AS regclass), ?, ?, CAST(doi AS varchar))")) {
+        statement.setString(1, table);
+        statement.setInt(2, partitions);
+        statement.setInt(3, partition);
+        statement.executeUpdate();
+      }
+    });
+  }
+
+  /**
+   * @param dois without prefix
+   * @return the DOIs that belong to the partition of the table
+   */
+  public List<String> filterPartition(String table, int partitions, int partition, Collection<String> dois) {
+    return currentSession().doReturningWork(connection -> {
+      List<String> found = new ArrayList<>();
+      Array array = connection.createArrayOf("varchar", dois.toArray());
+      try (PreparedStatement statement = connection.prepareStatement(
+          "SELECT d FROM unnest(?) AS d WHERE satisfies_hash_partition(CAST(? AS regclass), ?, ?, CAST(d AS varchar))")) {
+        statement.setArray(1, array);
+        statement.setString(2, table);
+        statement.setInt(3, partitions);
+        statement.setInt(4, partition);
+        try (ResultSet rs = statement.executeQuery()) {
+          while (rs.next())
+            found.add(rs.getString(1));
+        }
+      }
+      finally {
+        array.free();
+      }
+      return found;
+    });
+  }
+
+  static String partitionName(String table, int partition) {
+    return table + "_p" + partition;
+  }
+
+  private void createTable(String table, int partitions, String columns) {
+    if (exists(table)) {
+      // also with 0 configured: a partitioned table must not pass for a plain one, --staging would replace it
+      int existing = countPartitions(table);
+      if (existing != partitions)
+        throw new IllegalStateException(String.format("%s has %d partitions, configured are %d. Export, drop and reload the table to change it.",
+            table, existing, partitions));
+      return;
+    }
+    log.info("Creating table {}{}", table, partitions > 0 ? " with " + partitions + " partitions" : "");
+    execute("CREATE TABLE " + table + " (" + columns + ")" + (partitions > 0 ? " PARTITION BY HASH (doi)" : ""));
+    for (int i = 0; i < partitions; i++)
+      execute(String.format("CREATE TABLE %s PARTITION OF %s FOR VALUES WITH (MODULUS %d, REMAINDER %d)", partitionName(table, i), table, partitions, i));
+  }
+
+  private void createIndexes(TableKeys keys) {
+    for (Map.Entry<String, String> index : keys.indexes(isPostgreSQL()).entrySet())
+      createIndex(keys.table, index.getKey(), index.getValue());
+  }
+
+  private void createIndex(String table, String name, String columns) {
+    createIndex(table, "", name, columns);
+  }
+
+  /**
+   * On a partitioned table the index is created on each partition.
+   */
+  void createIndex(String table, String unique, String name, String columns) {
+    if (indexExists(table, name))
+      return;
+    log.info("Creating index {} on {}", name, table);
+    execute("CREATE " + unique + (unique.isEmpty() ? "" : " ") + "INDEX " + name + " ON " + table + " (" + columns + ")");
+  }
+
+  private boolean exists(String table) {
+    return currentSession().doReturningWork(connection -> {
+      DatabaseMetaData metaData = connection.getMetaData();
+      try (ResultSet tables = metaData.getTables(null, null, identifier(metaData, table), null)) {
+        return tables.next();
+      }
+    });
+  }
+
+  private boolean isView(String table) {
+    return currentSession().doReturningWork(connection -> {
+      DatabaseMetaData metaData = connection.getMetaData();
+      try (ResultSet tables = metaData.getTables(null, null, identifier(metaData, table), new String[] { "VIEW" })) {
+        return tables.next();
+      }
+    });
+  }
+
+  private boolean hasRows(String table) {
+    return !currentSession().createNativeQuery("SELECT 1 FROM " + table).setMaxResults(1).list().isEmpty();
+  }
+
+  private boolean indexExists(String table, String index) {
+    return currentSession().doReturningWork(connection -> {
+      DatabaseMetaData metaData = connection.getMetaData();
+      try (ResultSet indexes = metaData.getIndexInfo(null, null, identifier(metaData, table), false, true)) {
+        while (indexes.next())
+          if (identifier(metaData, index).equals(indexes.getString("INDEX_NAME")))
+            return true;
+        return false;
+      }
+    });
+  }
+
+  private static String identifier(DatabaseMetaData metaData, String name) throws java.sql.SQLException {
+    return metaData.storesUpperCaseIdentifiers() ? name.toUpperCase() : name;
+  }
+
+  private boolean isPostgreSQL() {
+    return ((SessionFactoryImplementor) currentSession().getSessionFactory()).getJdbcServices().getDialect() instanceof PostgreSQL81Dialect;
+  }
+
+  private void execute(String sql) {
+    log.debug(sql);
+    currentSession().createNativeQuery(sql).executeUpdate();
+  }
+
+  /**
+   * The primary key and indexes of a table, also built by StagingTablesDAO on a staging copy of the table.
+   */
+  static final class TableKeys {
+    final String table;
+    final String primaryKey;
+    private final Map<String, String> indexes = new LinkedHashMap<>();
+    private final Map<String, String> postgreSQLIndexes = new LinkedHashMap<>();
+
+    private TableKeys(String table, String primaryKey) {
+      this.table = table;
+      this.primaryKey = primaryKey;
+    }
+
+    private TableKeys index(String name, String columns) {
+      indexes.put(name, columns);
+      return this;
+    }
+
+    private TableKeys postgreSQLIndex(String name, String columns) {
+      postgreSQLIndexes.put(name, columns);
+      return this;
+    }
+
+    String primaryKeyName() {
+      return table + "_pkey";
+    }
+
+    /**
+     * @return index names with their columns
+     */
+    Map<String, String> indexes(boolean postgreSQL) {
+      Map<String, String> all = new LinkedHashMap<>(indexes);
+      if (postgreSQL)
+        all.putAll(postgreSQLIndexes);
+      return all;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import io.dropwizard.hibernate.AbstractDAO;
+import nl.knaw.dans.migration.db.SchemaDAO.TableKeys;
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.HSQLDialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static nl.knaw.dans.migration.db.ActualTables.LIVE;
+import static nl.knaw.dans.migration.db.ActualTables.STAGING;
+
+/**
+ * Staging tables without indexes for a full load. They get their indexes once all rows are in
+ * and then replace the live tables by rename. On PostgreSQL the swap is a single transaction,
+ * so readers see either the old or the new tables, never a partial load.
+ * The primary keys and indexes are those of SchemaDAO.
+ * With the files, the ACTUAL fingerprints are staged too: the swap replaces those of the live table.
+ */
+public class StagingTablesDAO extends AbstractDAO<StagingTablesDAO> {
+  private static final Logger log = LoggerFactory.getLogger(StagingTablesDAO.class);
+
+  public StagingTablesDAO(SessionFactory sessionFactory) {
+    super(sessionFactory);
+  }
+
+  /**
+   * @param keepExisting continue with the rows of an interrupted load, otherwise start with empty staging tables
+   */
+  public void create(boolean doFiles, boolean doDatasets, boolean keepExisting) {
+    for (TableKeys table : tables(doFiles, doDatasets)) {
+      if (!keepExisting)
+        execute("DROP TABLE IF EXISTS " + staging(table));
+      execute("CREATE TABLE IF NOT EXISTS " + staging(table) + " AS (SELECT * FROM " + table.table + ") WITH NO DATA");
+    }
+    if (doFiles) {
+      if (!keepExisting)
+        execute("DROP TABLE IF EXISTS " + STAGING.getFingerprints());
+      execute("CREATE TABLE IF NOT EXISTS " + STAGING.getFingerprints() + " AS (SELECT * FROM " + LIVE.getFingerprints() + ") WITH NO DATA");
+    }
+  }
+
+  public void buildIndexes(boolean doFiles, boolean doDatasets) {
+    for (TableKeys table : tables(doFiles, doDatasets)) {
+      execute("ALTER TABLE " + staging(table) + " ADD CONSTRAINT " + STAGING.name(table.primaryKeyName())
+          + " PRIMARY KEY (" + table.primaryKey + ")");
+      for (Map.Entry<String, String> index : table.indexes(isPostgreSQL()).entrySet())
+        execute("CREATE INDEX " + STAGING.name(index.getKey()) + " ON " + staging(table) + " (" + index.getValue() + ")");
+      if (isPostgreSQL())
+        execute("ANALYZE " + staging(table));
+    }
+  }
+
+  /**
+   * Drops the live tables and gives the staging tables, their indexes and primary keys the live names.
+   */
+  public void swap(boolean doFiles, boolean doDatasets) {
+    for (TableKeys table : tables(doFiles, doDatasets)) {
+      execute("DROP TABLE " + table.table);
+      execute("ALTER TABLE " + staging(table) + " RENAME TO " + table.table);
+      execute(isPostgreSQL()
+          ? "ALTER TABLE " + table.table + " RENAME CONSTRAINT " + STAGING.name(table.primaryKeyName()) + " TO " + table.primaryKeyName()
+          : "ALTER CONSTRAINT " + STAGING.name(table.primaryKeyName()) + " RENAME TO " + table.primaryKeyName());
+      for (String index : table.indexes(isPostgreSQL()).keySet())
+        execute("ALTER INDEX " + STAGING.name(index) + " RENAME TO " + index);
+    }
+    if (doFiles) {
+      // the EXPECTED side stays, a DOI that the load did not find keeps no ACTUAL fingerprint
+      execute("DELETE FROM " + LIVE.getFingerprints() + " WHERE side = 'ACTUAL'");
+      execute("INSERT INTO " + LIVE.getFingerprints() + " SELECT * FROM " + STAGING.getFingerprints());
+      execute("DROP TABLE " + STAGING.getFingerprints());
+    }
+  }
+
+  private List<TableKeys> tables(boolean doFiles, boolean doDatasets) {
+    Dialect dialect = dialect();
+    if (!(dialect instanceof PostgreSQL81Dialect || dialect instanceof HSQLDialect))
+      throw new IllegalStateException("Staging tables need PostgreSQL or HSQLDB, not " + dialect);
+    List<TableKeys> tables = new ArrayList<>();
+    if (doFiles)
+      tables.add(SchemaDAO.actualFilesKeys);
+    if (doDatasets)
+      tables.add(SchemaDAO.actualDatasetsKeys);
+    return tables;
+  }
+
+  private static String staging(TableKeys table) {
+    return STAGING.name(table.table);
+  }
+
+  private boolean isPostgreSQL() {
+    return dialect() instanceof PostgreSQL81Dialect;
+  }
+
+  private Dialect dialect() {
+    return ((SessionFactoryImplementor) currentSession().getSessionFactory()).getJdbcServices().getDialect();
+  }
+
+  private void execute(String sql) {
+    log.debug(sql);
+    currentSession().createNativeQuery(sql).executeUpdate();
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import nl.knaw.dans.migration.core.tables.ActualDataset;
+import nl.knaw.dans.migration.core.tables.ActualFile;
+import nl.knaw.dans.migration.core.tables.ActualFileRange;
+import nl.knaw.dans.migration.core.tables.ActualFileVersion;
+import nl.knaw.dans.migration.core.tables.Sha1Converter;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the files of a dataset as {@link ActualFileRange}s: a file that does not change between consecutive versions
+ * is stored once. The datasets go to the writer of the configured type.
+ */
+public class VersionRangeActualWriter implements ActualWriter {
+  private static final Logger log = LoggerFactory.getLogger(VersionRangeActualWriter.class);
+
+  static final String insertRange = "INSERT INTO actual_file_ranges"
+      + " (doi, actual_path, first_major_version_nr, first_minor_version_nr, last_major_version_nr, last_minor_version_nr,"
+      + " sha1_checksum, storage_id, accessible_to, embargo_date)"
+      + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+  static final String insertVersion = "INSERT INTO actual_file_versions"
+      + " (doi, major_version_nr, minor_version_nr)"
+      + " VALUES (?, ?, ?)";
+
+  private final SessionFactory sessionFactory;
+  private final int batchSize;
+  private final ActualWriter datasetWriter;
+
+  public VersionRangeActualWriter(SessionFactory sessionFactory, int batchSize, ActualWriter datasetWriter) {
+    this.sessionFactory = sessionFactory;
+    this.batchSize = batchSize;
+    this.datasetWriter = datasetWriter;
+  }
+
+  @Override
+  public int write(ActualTables tables, List<ActualDataset> datasets, List<ActualFile> files) {
+    if (tables != ActualTables.LIVE)
+      throw new IllegalArgumentException("The version ranges have no " + tables + " tables");
+    int rows = datasetWriter.write(tables, datasets, Collections.emptyList());
+    if (files.isEmpty())
+      return rows;
+    List<ActualFileRange> ranges = ranges(files);
+    List<ActualFileVersion> versions = versions(files);
+    sessionFactory.getCurrentSession().doWork(connection -> {
+      insertRanges(connection, ranges);
+      insertVersions(connection, versions);
+    });
+    log.trace("inserted {} ranges and {} versions for {} files", ranges.size(), versions.size(), files.size());
+    return rows + ranges.size() + versions.size();
+  }
+
+  /**
+   * @param files the files of all versions of datasets, in any order
+   * @return a range per file and the consecutive versions in which it is unchanged
+   */
+  static List<ActualFileRange> ranges(List<ActualFile> files) {
+    List<ActualFile> sorted = new ArrayList<>(files);
+    sorted.sort(Comparator.comparing(ActualFile::getDoi)
+        .thenComparingInt(ActualFile::getMajorVersionNr)
+        .thenComparingInt(ActualFile::getMinorVersionNr));
+    List<ActualFileRange> ranges = new ArrayList<>();
+    // by path, the ranges that include the previous version and the current version
+    Map<String, ActualFileRange> previous = new HashMap<>();
+    Map<String, ActualFileRange> current = new HashMap<>();
+    ActualFile firstOfVersion = null;
+    for (ActualFile file : sorted) {
+      if (firstOfVersion == null || !isSameVersion(firstOfVersion, file)) {
+        previous = firstOfVersion != null && firstOfVersion.getDoi().equals(file.getDoi())
+            ? current
+            : new HashMap<>();
+        current = new HashMap<>();
+        firstOfVersion = file;
+      }
+      ActualFileRange range = previous.remove(file.getActualPath());
+      if (range != null && range.hasContentOf(file))
+        range.extendTo(file.getMajorVersionNr(), file.getMinorVersionNr());
+      else {
+        range = new ActualFileRange(file);
+        ranges.add(range);
+      }
+      current.put(file.getActualPath(), range);
+    }
+    return ranges;
+  }
+
+  static List<ActualFileVersion> versions(List<ActualFile> files) {
+    LinkedHashSet<ActualFileVersion> versions = new LinkedHashSet<>();
+    for (ActualFile file : files)
+      versions.add(new ActualFileVersion(file.getDoi(), file.getMajorVersionNr(), file.getMinorVersionNr()));
+    return new ArrayList<>(versions);
+  }
+
+  private static boolean isSameVersion(ActualFile a, ActualFile b) {
+    return a.getDoi().equals(b.getDoi()) && a.getMajorVersionNr() == b.getMajorVersionNr() && a.getMinorVersionNr() == b.getMinorVersionNr();
+  }
+
+  private void insertRanges(Connection connection, List<ActualFileRange> ranges) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(insertRange)) {
+      int pending = 0;
+      for (ActualFileRange r : ranges) {
+        statement.setString(1, r.getDoi());
+        statement.setString(2, r.getActualPath());
+        statement.setInt(3, r.getFirstMajorVersionNr());
+        statement.setInt(4, r.getFirstMinorVersionNr());
+        statement.setInt(5, r.getLastMajorVersionNr());
+        statement.setInt(6, r.getLastMinorVersionNr());
+        statement.setBytes(7, Sha1Converter.toBytes(r.getSha1Checksum()));
+        statement.setString(8, r.getStorageId());
+        statement.setString(9, r.getAccessibleTo());
+        statement.setString(10, r.getEmbargoDate());
+        statement.addBatch();
+        if (++pending == batchSize) {
+          statement.executeBatch();
+          pending = 0;
+        }
+      }
+      if (pending > 0)
+        statement.executeBatch();
+    }
+  }
+
+  private void insertVersions(Connection connection, List<ActualFileVersion> versions) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(insertVersion)) {
+      int pending = 0;
+      for (ActualFileVersion v : versions) {
+        statement.setString(1, v.getDoi());
+        statement.setInt(2, v.getMajorVersionNr());
+        statement.setInt(3, v.getMinorVersionNr());
+        statement.addBatch();
+        if (++pending == batchSize) {
+          statement.executeBatch();
+          pending = 0;
+        }
+      }
+      if (pending > 0)
+        statement.executeBatch();
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import io.dropwizard.util.Duration;
+import nl.knaw.dans.migration.config.RateLimitConfig;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AdaptiveLimiterTest {
+
+    private RateLimitConfig config(int initialLimit, int maxRetries) {
+        RateLimitConfig config = new RateLimitConfig();
+        config.setInitialLimit(initialLimit);
+        config.setMaxRetries(maxRetries);
+        config.setInitialBackoff(Duration.milliseconds(1));
+        config.setMaxBackoff(Duration.milliseconds(2));
+        return config;
+    }
+
+    @Test
+    public void retries_until_success() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(config(8, 3));
+        AtomicInteger attempts = new AtomicInteger();
+        String result = limiter.call(() -> {
+            if (attempts.incrementAndGet() < 3)
+                throw new IOException("Connection reset");
+            return "ok";
+        });
+        assertThat(result).isEqualTo("ok");
+        assertThat(limiter.getThrottled()).isEqualTo(2);
+        assertThat(limiter.getRetries()).isEqualTo(2);
+        assertThat(limiter.getFailures()).isEqualTo(0);
+        assertThat(limiter.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    public void gives_up_after_max_retries() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(config(4, 2));
+        AtomicInteger attempts = new AtomicInteger();
+        assertThatThrownBy(() -> limiter.call(() -> {
+            attempts.incrementAndGet();
+            throw new IOException("Connection refused");
+        })).isInstanceOf(IOException.class);
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(limiter.getFailures()).isEqualTo(1);
+        assertThat(limiter.getLimit()).isEqualTo(1);
+    }
+
+    @Test
+    public void does_not_retry_other_errors() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(config(4, 2));
+        AtomicInteger attempts = new AtomicInteger();
+        assertThatThrownBy(() -> limiter.call(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("not found");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(attempts.get()).isEqualTo(1);
+        assertThat(limiter.getThrottled()).isEqualTo(0);
+    }
+
+    @Test
+    public void does_not_retry_parse_errors() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(config(4, 2));
+        AtomicInteger attempts = new AtomicInteger();
+        assertThatThrownBy(() -> limiter.call(() -> {
+            attempts.incrementAndGet();
+            throw new JsonParseException(null, "Unexpected character");
+        })).isInstanceOf(JsonParseException.class);
+        assertThat(attempts.get()).isEqualTo(1);
+        assertThat(limiter.getThrottled()).isEqualTo(0);
+        assertThat(limiter.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    public void raises_limit_on_success() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(config(2, 0));
+        for (int i = 0; i < 10; i++)
+            limiter.call(() -> "ok");
+        assertThat(limiter.getLimit()).isGreaterThan(2);
+    }
+}
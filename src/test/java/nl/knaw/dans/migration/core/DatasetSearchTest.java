@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DatasetSearchTest {
+
+    @Test
+    public void reads_the_bag_ids_of_the_hits() throws Exception {
+        String data = "{\"total_count\": 2, \"items\": ["
+            + "{\"global_id\": \"doi:10.5072/a\", \"metadataBlocks\": {\"dansDataVaultMetadata\": {\"fields\": ["
+            + "{\"typeName\": \"dansBagId\", \"value\": \"urn:uuid:0b9bb5ee-3187-4387-bb39-2c09536c79f7\"}]}}},"
+            + "{\"global_id\": \"doi:10.5072/b\"}]}";
+        Map<String, Set<String>> bagIds = new HashMap<>();
+
+        assertThat(DatasetSearch.addBagIds(new ObjectMapper().readTree(data), bagIds)).isEqualTo(2);
+        assertThat(bagIds.get("doi:10.5072/a")).containsExactly("urn:uuid:0b9bb5ee-3187-4387-bb39-2c09536c79f7");
+        assertThat(bagIds.get("doi:10.5072/b")).isEmpty();
+    }
+}
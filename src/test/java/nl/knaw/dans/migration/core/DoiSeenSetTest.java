@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DoiSeenSetTest {
+
+    @Test
+    public void detects_non_adjacent_duplicates() {
+        DoiSeenSet seen = new DoiSeenSet(10);
+        assertThat(seen.add("doi:10.17026/dans-xtz-qa6j")).isTrue();
+        assertThat(seen.add("doi:10.17026/dans-2a3-4b5c")).isTrue();
+        assertThat(seen.add("doi:10.17026/dans-xtz-qa6j")).isFalse();
+        assertThat(seen.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void grows_beyond_the_expected_number() {
+        DoiSeenSet seen = new DoiSeenSet(16);
+        for (int i = 0; i < 1000; i++)
+            assertThat(seen.add("doi:10.5072/dans-" + i)).isTrue();
+        for (int i = 0; i < 1000; i++)
+            assertThat(seen.add("doi:10.5072/dans-" + i)).isFalse();
+        assertThat(seen.size()).isEqualTo(1000);
+    }
+
+    @Test
+    public void fingerprint_is_never_zero() {
+        assertThat(DoiSeenSet.fingerprint("")).isNotZero();
+        assertThat(DoiSeenSet.fingerprint("doi:10.17026/dans-xtz-qa6j")).isNotEqualTo(DoiSeenSet.fingerprint("doi:10.17026/dans-xtz-qa6k"));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import nl.knaw.dans.migration.core.tables.FileDifference;
+import nl.knaw.dans.migration.core.tables.FileDifference.Category;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileComparisonTest {
+
+    private static FileRow row(String doi, String path, String sha1, String accessibleTo) {
+        return new FileRow(doi, path, sha1, accessibleTo, null, doi, path);
+    }
+
+    private static List<String> describe(List<FileDifference> differences) {
+        return differences.stream()
+            .map(d -> d.getDoi() + " " + d.getPath() + " " + d.getCategory())
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    public void reports_missing_extra_and_mismatching_files_in_key_order() {
+        List<FileRow> expected = Arrays.asList(
+            row("10.5072/a", "data/a.txt", "aa", "ANONYMOUS"),
+            row("10.5072/a", "data/b.txt", "bb", "ANONYMOUS"),
+            row("10.5072/b", "data/c.txt", "cc", "RESTRICTED_REQUEST"));
+        List<FileRow> actual = Arrays.asList(
+            row("10.5072/a", "data/a.txt", "aa", "ANONYMOUS"),
+            row("10.5072/a", "data/c.txt", "cc", "ANONYMOUS"),
+            row("10.5072/b", "data/c.txt", "dd", "NONE"));
+        List<FileDifference> differences = new ArrayList<>();
+
+        Map<Category, Long> counts = new FileComparison(differences::add).compare(expected.iterator(), actual.iterator());
+
+        assertThat(describe(differences)).containsExactly(
+            "10.5072/a data/b.txt MISSING",
+            "10.5072/a data/c.txt EXTRA",
+            "10.5072/b data/c.txt CHECKSUM_MISMATCH",
+            "10.5072/b data/c.txt ACCESSIBLE_TO_MISMATCH");
+        assertThat(counts).containsEntry(Category.MISSING, 1L).doesNotContainKey(Category.EMBARGO_MISMATCH);
+        assertThat(differences.get(2).getExpectedValue()).isEqualTo("cc");
+        assertThat(differences.get(2).getActualValue()).isEqualTo("dd");
+    }
+
+    @Test
+    public void reports_the_rest_of_the_longer_side() {
+        List<FileDifference> differences = new ArrayList<>();
+
+        new FileComparison(differences::add).compare(
+            Arrays.asList(row("10.5072/a", "x", null, null)).iterator(),
+            Arrays.asList(row("10.5072/a", "x", null, null), row("10.5072/a", "y", null, null), row("10.5072/b", "z", null, null)).iterator());
+
+        assertThat(describe(differences)).containsExactly("10.5072/a y EXTRA", "10.5072/b z EXTRA");
+    }
+
+    @Test
+    public void orders_by_code_point_like_collate_c() {
+        // U+FF21 sorts before U+1F600 by code point, but after its surrogate pair by UTF-16 unit
+        assertThat(FileComparison.codePointOrder.compare("\uFF21", "\uD83D\uDE00")).isNegative();
+        assertThat("\uFF21".compareTo("\uD83D\uDE00")).isPositive();
+        assertThat(FileComparison.codePointOrder.compare("ab", "a")).isPositive();
+        assertThat(FileComparison.codePointOrder.compare("a", "a")).isZero();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import nl.knaw.dans.migration.core.tables.ActualFile;
+import nl.knaw.dans.migration.core.tables.DatasetFingerprint;
+import nl.knaw.dans.migration.core.tables.DatasetFingerprint.Side;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static nl.knaw.dans.migration.core.tables.ActualFileFixture.file;
+import static nl.knaw.dans.migration.core.tables.ActualFileFixture.version;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FingerprintTest {
+
+    private static List<DatasetFingerprint> collect(Side side, FileRow... rows) {
+        List<DatasetFingerprint> fingerprints = new ArrayList<>();
+        Fingerprint.collect(Arrays.asList(rows).iterator(), side, fingerprints::add);
+        return fingerprints;
+    }
+
+    @Test
+    public void does_not_depend_on_the_order_of_the_files() {
+        List<DatasetFingerprint> expected = collect(Side.EXPECTED,
+            new FileRow("10.5072/a", "x", "aa", "ANONYMOUS", null),
+            new FileRow("10.5072/a", "y", "bb", "NONE", null));
+        List<DatasetFingerprint> actual = collect(Side.ACTUAL,
+            new FileRow("10.5072/a", "y", "bb", "NONE", null),
+            new FileRow("10.5072/a", "x", "aa", "ANONYMOUS", null));
+
+        assertThat(expected).hasSize(1);
+        assertThat(expected.get(0).matches(actual.get(0))).isTrue();
+    }
+
+    @Test
+    public void tells_null_from_empty_and_counts_duplicates() {
+        DatasetFingerprint withNull = collect(Side.EXPECTED, new FileRow("10.5072/a", "x", "aa", null, null)).get(0);
+        DatasetFingerprint withEmpty = collect(Side.ACTUAL, new FileRow("10.5072/a", "x", "aa", "", null)).get(0);
+        DatasetFingerprint twice = collect(Side.ACTUAL,
+            new FileRow("10.5072/a", "x", "aa", null, null),
+            new FileRow("10.5072/a", "x", "aa", null, null)).get(0);
+
+        assertThat(withNull.matches(withEmpty)).isFalse();
+        assertThat(withNull.matches(twice)).isFalse();
+    }
+
+    @Test
+    public void actual_fingerprint_covers_the_latest_version_as_stored() {
+        ActualFile latest = file("a.txt", 2, 0, "DA39A3EE5E6B4B0D3255BFEF95601890AFD80709");
+        DatasetFingerprint loaded = Fingerprint.ofLatestVersion(Arrays.asList(version(1, 0), version(2, 0)), Arrays.asList(
+            file("old.txt", 1, 0, "123456"),
+            latest)).get();
+        DatasetFingerprint read = collect(Side.EXPECTED, new FileRow(latest.getDoi(), "a.txt", "da39a3ee5e6b4b0d3255bfef95601890afd80709",
+            latest.getAccessibleTo(), null)).get(0);
+
+        assertThat(loaded.getSide()).isEqualTo(Side.ACTUAL);
+        assertThat(loaded.getFiles()).isEqualTo(1);
+        assertThat(loaded.matches(read)).isTrue();
+        assertThat(Fingerprint.ofLatestVersion(new ArrayList<>(), Collections.singletonList(latest))).isEmpty();
+    }
+
+    @Test
+    public void latest_version_without_files_has_an_empty_fingerprint() {
+        DatasetFingerprint loaded = Fingerprint.ofLatestVersion(Arrays.asList(version(1, 0), version(1, 1)),
+            Collections.singletonList(file("a.txt", 1, 0, "123456"))).get();
+
+        assertThat(loaded.getFiles()).isEqualTo(0);
+        assertThat(loaded.getFingerprint()).isEqualTo(0);
+    }
+
+    @Test
+    public void reports_dois_that_differ_or_have_one_side() {
+        DatasetFingerprint same = new DatasetFingerprint("10.5072/a", Side.ACTUAL, 1, 7);
+        List<String> dois = new ArrayList<>();
+
+        Fingerprint.differingDois(Arrays.asList(
+            same,
+            new DatasetFingerprint("10.5072/a", Side.EXPECTED, 1, 7),
+            new DatasetFingerprint("10.5072/b", Side.ACTUAL, 1, 7),
+            new DatasetFingerprint("10.5072/b", Side.EXPECTED, 1, 8),
+            new DatasetFingerprint("10.5072/c", Side.EXPECTED, 2, 9)).iterator(), dois::add);
+
+        assertThat(dois).containsExactly("10.5072/b", "10.5072/c");
+    }
+
+    @Test
+    public void doi_absent_after_a_reload_is_compared() {
+        // the reload cleared the ACTUAL side and found no dataset to fingerprint, only the EXPECTED side remains
+        assertThat(Fingerprint.ofLatestVersion(new ArrayList<>(), new ArrayList<>())).isEmpty();
+        List<String> dois = new ArrayList<>();
+
+        Fingerprint.differingDois(Arrays.asList(
+            new DatasetFingerprint("10.5072/a", Side.ACTUAL, 1, 7),
+            new DatasetFingerprint("10.5072/a", Side.EXPECTED, 1, 7),
+            new DatasetFingerprint("10.5072/gone", Side.EXPECTED, 1, 7)).iterator(), dois::add);
+
+        assertThat(dois).containsExactly("10.5072/gone");
+    }
+}
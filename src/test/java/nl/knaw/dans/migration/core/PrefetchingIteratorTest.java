@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PrefetchingIteratorTest {
+
+    private static List<Integer> range(int start, int end) {
+        return IntStream.range(start, end).boxed().collect(Collectors.toList());
+    }
+
+    @Test
+    public void iterates_all_pages_in_order() {
+        List<Integer> starts = new ArrayList<>();
+        List<Integer> result = new ArrayList<>();
+        try (PrefetchingIterator<Integer> iterator = new PrefetchingIterator<>(start -> {
+            synchronized (starts) {
+                starts.add(start);
+            }
+            return new PrefetchingIterator.Results<>(range(start, Math.min(start + 3, 8)), 8);
+        }, 2)) {
+            iterator.forEachRemaining(result::add);
+        }
+        assertThat(result).isEqualTo(range(0, 8));
+        assertThat(starts).containsExactly(0, 3, 6);
+    }
+
+    @Test
+    public void without_total_ends_with_an_empty_page() {
+        List<Integer> result = new ArrayList<>();
+        try (PrefetchingIterator<Integer> iterator = new PrefetchingIterator<>(
+            start -> new PrefetchingIterator.Results<>(range(start, Math.min(start + 3, 6)), -1), 1)) {
+            iterator.forEachRemaining(result::add);
+        }
+        assertThat(result).isEqualTo(range(0, 6));
+    }
+
+    @Test
+    public void short_page_before_the_total_is_not_the_last() {
+        List<Integer> result = new ArrayList<>();
+        // the first page lost an item, as with permission filtering
+        try (PrefetchingIterator<Integer> iterator = new PrefetchingIterator<>(
+            start -> new PrefetchingIterator.Results<>(start == 0 ? range(0, 2) : range(start, Math.min(start + 3, 7)), 7), 2)) {
+            iterator.forEachRemaining(result::add);
+        }
+        assertThat(result).isEqualTo(range(0, 7));
+    }
+
+    @Test
+    public void failure_ends_the_iteration_after_the_pages_fetched_before() {
+        PrefetchingIterator<Integer> iterator = new PrefetchingIterator<>(start -> {
+            if (start > 0)
+                throw new IOException("Connection reset");
+            return new PrefetchingIterator.Results<>(range(0, 2), -1);
+        }, 2);
+        assertThat(iterator.next()).isEqualTo(0);
+        assertThat(iterator.next()).isEqualTo(1);
+        assertThatThrownBy(iterator::hasNext)
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("Connection reset");
+        assertThat(iterator.hasNext()).isFalse();
+        iterator.close();
+    }
+
+    @Test
+    public void keyset_pages_continue_after_the_last_item() {
+        List<Integer> lasts = new ArrayList<>();
+        List<Integer> result = new ArrayList<>();
+        try (PrefetchingIterator<Integer> iterator = new PrefetchingIterator<>((Integer last) -> {
+            int start = last == null ? 0 : last + 1;
+            synchronized (lasts) {
+                lasts.add(last);
+            }
+            return range(start, Math.min(start + 3, 7));
+        }, 3, 2, "test-prefetch")) {
+            iterator.forEachRemaining(result::add);
+        }
+        assertThat(result).isEqualTo(range(0, 7));
+        assertThat(lasts).containsExactly(null, 2, 5);
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UuidResolverTest {
+
+    @Test
+    public void bags_of_versions_of_one_dataset_are_all_matched() {
+        String v1 = "0b9bb5ee-3187-4387-bb39-2c09536c79f7";
+        String v2 = "F1A2B3C4-0000-4000-8000-000000000002";
+        String missing = "a1a2a3a4-0000-4000-8000-000000000003";
+
+        assertThat(UuidResolver.unmatched(Arrays.asList(v1, v2, missing), Collections.singletonList(
+            new HashSet<>(Arrays.asList("urn:uuid:" + v1, "urn:uuid:" + v2.toLowerCase())))))
+            .containsExactly(missing);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core;
+
+import io.dropwizard.util.Duration;
+import nl.knaw.dans.migration.config.CommitPolicy;
+import nl.knaw.dans.migration.core.tables.ActualFile;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WriteBehindTest {
+
+    private static LoadedDataset dataset(String doi) {
+        return new LoadedDataset(doi, Collections.emptyList(), Collections.emptyList(), 1, 0);
+    }
+
+    private static LoadedDataset dataset(String doi, int nrOfFiles) {
+        return new LoadedDataset(doi, Collections.emptyList(), Collections.nCopies(nrOfFiles, new ActualFile()), 1, 0);
+    }
+
+    private static CommitPolicy commitPolicy(int datasets, long maxRowsPerTransaction) {
+        CommitPolicy commitPolicy = new CommitPolicy();
+        commitPolicy.setDatasets(datasets);
+        commitPolicy.setMaxRowsPerTransaction(maxRowsPerTransaction);
+        commitPolicy.setInterval(Duration.milliseconds(50));
+        return commitPolicy;
+    }
+
+    @Test
+    public void writes_all_datasets_in_batches() throws Exception {
+        LoadSummary summary = new LoadSummary();
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        try (WriteBehind writeBehind = new WriteBehind(2, 10, commitPolicy(3, 1000), batch -> {
+            batchSizes.add(batch.size());
+            return batch.size();
+        }, summary)) {
+            for (int i = 0; i < 10; i++)
+                writeBehind.put(dataset("doi:" + i));
+            writeBehind.awaitIdle();
+            assertThat(summary.getDatasets()).isEqualTo(10);
+        }
+        assertThat(batchSizes).allMatch(size -> size <= 3);
+        assertThat(batchSizes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(10);
+    }
+
+    @Test
+    public void failing_batch_is_written_one_by_one() throws Exception {
+        LoadSummary summary = new LoadSummary();
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        WriteBehind writeBehind = new WriteBehind(1, 10, commitPolicy(10, 1000), batch -> {
+            if (batch.stream().anyMatch(d -> d.getDoi().equals("doi:bad")))
+                throw new IllegalStateException("constraint violation");
+            written.addAll(batch.stream().map(LoadedDataset::getDoi).collect(Collectors.toList()));
+            return batch.size();
+        }, summary);
+        writeBehind.put(dataset("doi:a"));
+        writeBehind.put(dataset("doi:bad"));
+        writeBehind.put(dataset("doi:b"));
+        writeBehind.close();
+        assertThat(written).contains("doi:a", "doi:b");
+        assertThat(summary.getDatasets()).isEqualTo(2);
+        assertThat(summary.getUnwrittenDatasets()).isEqualTo(1);
+    }
+
+    @Test
+    public void dataset_exceeding_the_row_limit_goes_into_the_next_transaction() throws Exception {
+        LoadSummary summary = new LoadSummary();
+        List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        WriteBehind writeBehind = new WriteBehind(1, 10, commitPolicy(10, 5), batch -> {
+            batches.add(batch.stream().map(LoadedDataset::getDoi).collect(Collectors.toList()));
+            return batch.stream().mapToInt(LoadedDataset::getNrOfRows).sum();
+        }, summary);
+        writeBehind.put(dataset("doi:a", 3));
+        writeBehind.put(dataset("doi:b", 3));
+        writeBehind.put(dataset("doi:c", 7));
+        writeBehind.close();
+        assertThat(batches).containsExactly(
+            Collections.singletonList("doi:a"),
+            Collections.singletonList("doi:b"),
+            Collections.singletonList("doi:c"));
+        assertThat(summary.getWrittenRows()).isEqualTo(13);
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core.tables;
+
+/**
+ * Actual files and versions of one dataset for tests.
+ */
+public final class ActualFileFixture {
+    public static final String DOI = "10.5072/dans-2xg-umq8";
+
+    private ActualFileFixture() {
+    }
+
+    public static ActualFile file(String path, int major, int minor, String sha1) {
+        ActualFile file = new ActualFile();
+        file.setDoi(DOI);
+        file.setActualPath(path);
+        file.setMajorVersionNr(major);
+        file.setMinorVersionNr(minor);
+        file.setSha1Checksum(sha1);
+        file.setAccessibleTo(false, false);
+        return file;
+    }
+
+    public static ActualDataset version(int major, int minor) {
+        ActualDataset dataset = new ActualDataset();
+        dataset.setDoi(DOI);
+        dataset.setMajorVersionNr(major);
+        dataset.setMinorVersionNr(minor);
+        return dataset;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.core.tables;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class Sha1ConverterTest {
+    private final Sha1Converter converter = new Sha1Converter();
+
+    @Test
+    public void stores_20_bytes_and_reads_lower_case_hex() {
+        byte[] bytes = converter.convertToDatabaseColumn("DA39A3EE5E6B4B0D3255BFEF95601890AFD80709");
+
+        assertThat(bytes).hasSize(20);
+        assertThat(converter.convertToEntityAttribute(bytes)).isEqualTo("da39a3ee5e6b4b0d3255bfef95601890afd80709");
+    }
+
+    @Test
+    public void stores_empty_checksum_as_null() {
+        assertThat(converter.convertToDatabaseColumn("")).isNull();
+        assertThat(converter.convertToEntityAttribute(null)).isEqualTo("");
+    }
+
+    @Test
+    public void stores_invalid_checksum_as_null() {
+        assertThat(converter.convertToDatabaseColumn("n/a")).isNull();
+        assertThat(converter.convertToDatabaseColumn("abc")).isNull();
+    }
+}
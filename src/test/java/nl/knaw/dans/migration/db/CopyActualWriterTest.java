@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import nl.knaw.dans.migration.core.tables.ActualDataset;
+import nl.knaw.dans.migration.core.tables.ActualFile;
+import org.junit.jupiter.api.Test;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CopyActualWriterTest {
+
+    @Test
+    public void escapes_delimiters_and_writes_null_as_backslash_N() {
+        ActualFile file = new ActualFile();
+        file.setDoi("10.5072/dans-2xg-umq8");
+        file.setActualPath("data/a\tb\\c\nd.txt");
+        file.setMajorVersionNr(1);
+        file.setMinorVersionNr(0);
+        file.setSha1Checksum("da39a3ee5e6b4b0d3255bfef95601890afd80709");
+        file.setStorageId("file://123");
+        file.setAccessibleTo(false, false);
+
+        assertThat(CopyActualWriter.fileRows(singletonList(file))).isEqualTo(
+            "10.5072/dans-2xg-umq8\tdata/a\\tb\\\\c\\nd.txt\t1\t0\t\\\\xda39a3ee5e6b4b0d3255bfef95601890afd80709\tfile://123\tANONYMOUS\t\\N\n");
+    }
+
+    @Test
+    public void writes_booleans_and_missing_license_url() {
+        ActualDataset dataset = new ActualDataset();
+        dataset.setDoi("10.5072/dans-2xg-umq8");
+        dataset.setMajorVersionNr(2);
+        dataset.setMinorVersionNr(1);
+        dataset.setFileAccessRequest(true);
+        dataset.setDeaccessioned(false);
+        dataset.setLicenseName("custom");
+        dataset.setDepositor("user001");
+        dataset.setCitationYear("2021");
+
+        assertThat(CopyActualWriter.datasetRows(singletonList(dataset))).isEqualTo(
+            "10.5072/dans-2xg-umq8\t2\t1\ttrue\tfalse\tcustom\t\\N\tuser001\t2021\n");
+    }
+
+    @Test
+    public void copies_into_the_staging_tables() {
+        assertThat(CopyActualWriter.copyFiles(ActualTables.STAGING)).startsWith("COPY actual_files_staging (doi, actual_path,");
+        assertThat(CopyActualWriter.copyDatasets(ActualTables.LIVE)).startsWith("COPY actual_datasets (doi, major_version_nr,");
+    }
+}
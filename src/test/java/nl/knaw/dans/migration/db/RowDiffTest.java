@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import nl.knaw.dans.migration.core.tables.ActualDataset;
+import nl.knaw.dans.migration.core.tables.ActualDatasetKey;
+import nl.knaw.dans.migration.core.tables.ActualFile;
+import nl.knaw.dans.migration.core.tables.ActualFileFixture;
+import nl.knaw.dans.migration.core.tables.ActualFileKey;
+import org.junit.jupiter.api.Test;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RowDiffTest {
+
+    private static ActualFile file(String path, String sha1) {
+        return ActualFileFixture.file(path, 1, 0, sha1);
+    }
+
+    private static ActualDataset dataset(int major) {
+        ActualDataset dataset = new ActualDataset();
+        dataset.setDoi("10.5072/dans-2xg-umq8");
+        dataset.setMajorVersionNr(major);
+        dataset.setMinorVersionNr(0);
+        dataset.setFileAccessRequest(true);
+        dataset.setDeaccessioned(false);
+        dataset.setLicenseName("custom");
+        return dataset;
+    }
+
+    @Test
+    public void only_changed_rows_need_a_statement() {
+        ActualFile changed = file("b.txt", "456");
+        RowDiff<ActualFileKey, ActualFile> diff = new RowDiff<>(
+            asList(file("a.txt", "123"), file("b.txt", "234"), file("c.txt", "345")),
+            asList(file("a.txt", "123"), changed, file("d.txt", "567")),
+            ActualFileKey::new);
+
+        assertThat(diff.getUnchanged()).isEqualTo(1);
+        assertThat(diff.getUpdates()).containsExactly(changed);
+        assertThat(diff.getInserts()).containsExactly(file("d.txt", "567"));
+        assertThat(diff.getDeletes()).containsExactly(file("c.txt", "345"));
+        assertThat(diff.getChanges()).isEqualTo(3);
+    }
+
+    @Test
+    public void datasets_with_equal_columns_are_unchanged_beyond_the_cached_integers() {
+        // separate Integer instances, Integer.valueOf caches only -128..127
+        RowDiff<ActualDatasetKey, ActualDataset> diff = new RowDiff<>(
+            singletonList(dataset(1000)),
+            singletonList(dataset(1000)),
+            ActualDatasetKey::new);
+
+        assertThat(diff.getUnchanged()).isEqualTo(1);
+        assertThat(diff.getChanges()).isEqualTo(0);
+    }
+}
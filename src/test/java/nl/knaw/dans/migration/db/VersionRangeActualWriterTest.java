@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2021 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.migration.db;
+
+import nl.knaw.dans.migration.core.tables.ActualFile;
+import nl.knaw.dans.migration.core.tables.ActualFileRange;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static nl.knaw.dans.migration.core.tables.ActualFileFixture.file;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VersionRangeActualWriterTest {
+
+    private static String range(ActualFileRange r) {
+        return r.getActualPath() + " " + r.getFirstMajorVersionNr() + "." + r.getFirstMinorVersionNr()
+            + "-" + r.getLastMajorVersionNr() + "." + r.getLastMinorVersionNr();
+    }
+
+    @Test
+    public void unchanged_file_in_consecutive_versions_is_one_range() {
+        List<ActualFile> files = Arrays.asList(
+            file("a.txt", 2, 0, "123"),
+            file("a.txt", 1, 0, "123"),
+            file("a.txt", 1, 1, "123"));
+
+        assertThat(VersionRangeActualWriter.ranges(files)).extracting(VersionRangeActualWriterTest::range)
+            .containsExactly("a.txt 1.0-2.0");
+        assertThat(VersionRangeActualWriter.versions(files)).hasSize(3);
+    }
+
+    @Test
+    public void changed_or_returning_file_starts_a_new_range() {
+        List<ActualFile> files = Arrays.asList(
+            file("b.txt", 1, 0, "234"),
+            file("c.txt", 1, 0, "345"),
+            file("b.txt", 1, 1, "456"),
+            file("c.txt", 2, 0, "345"));
+
+        assertThat(VersionRangeActualWriter.ranges(files)).extracting(VersionRangeActualWriterTest::range)
+            .containsExactly("b.txt 1.0-1.0", "c.txt 1.0-1.0", "b.txt 1.1-1.1", "c.txt 2.0-2.0");
+    }
+}